@@ -0,0 +1,540 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Benchmarks for the persistence and parsing paths. Each benchmark runs a few
+// warmup iterations and then timed iterations of at least ITERATION_MILLIS,
+// like JMH's average-time mode, against fixtures generated in a temp
+// directory. Results are printed and written as JMH-style JSON.
+//
+//   javac -d bin core/src/*.java src/*.java bench/*.java
+//   java -cp bin FitTrackBench [--full] [--filter <text>] [--json <file>]
+//
+// Every benchmark works on its own temp files, so it can run from anywhere.
+// --full adds the 10M-line history fixture, which needs a few GB of disk.
+public class FitTrackBench {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 500;
+    private static final int EXERCISES_PER_ROUTINE = 5;
+    private static final int EXERCISE_BATCH = 10_000;
+
+    private static final int[] ROUTINE_COUNTS = { 10, 1_000, 100_000 };
+    private static final int[] HISTORY_LINES = { 1_000, 100_000, 1_000_000 };
+    private static final int[] HISTORY_LINES_FULL = { 1_000, 100_000, 1_000_000, 10_000_000 };
+
+    // Results are folded into this so the JIT cannot drop the measured work
+    static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        boolean full = false;
+        String filter = null;
+        String jsonFile = "bench-results.json";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--full" -> full = true;
+                case "--filter" -> filter = args[++i];
+                case "--json" -> jsonFile = args[++i];
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (int size : ROUTINE_COUNTS) {
+            benchmarks.add(new LoadRoutines(size));
+            benchmarks.add(new SaveRoutines(size));
+            benchmarks.add(new DeleteRoutine(size));
+        }
+        benchmarks.add(new ExerciseFromString(EXERCISE_BATCH));
+        benchmarks.add(new ExerciseToString(EXERCISE_BATCH));
+        benchmarks.add(new RoutineWriterThroughput(EXERCISE_BATCH));
+        for (int size : full ? HISTORY_LINES_FULL : HISTORY_LINES) {
+            benchmarks.add(new MigrateHistory(size));
+            benchmarks.add(new ReadHistory(size));
+            benchmarks.add(new SumHistoryDurations(size));
+            benchmarks.add(new HistoryRangeQuery(size));
+        }
+
+        Path workDir = Files.createTempDirectory("fittrack-bench");
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Benchmark benchmark : benchmarks) {
+                if (filter != null && !benchmark.name.contains(filter)) {
+                    continue;
+                }
+                Path dir = Files.createDirectory(workDir.resolve(benchmark.name + "-" + benchmark.size));
+                results.add(run(benchmark, dir));
+                deleteRecursively(dir);
+            }
+        } finally {
+            deleteRecursively(workDir);
+        }
+
+        writeJson(Paths.get(jsonFile), results);
+        System.out.println("Results written to " + jsonFile);
+    }
+
+    private static Result run(Benchmark benchmark, Path dir) throws Exception {
+        System.out.printf(Locale.ROOT, "%-28s size=%-9d ", benchmark.name, benchmark.size);
+        benchmark.setup(dir);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(benchmark);
+        }
+        double[] scores = new double[MEASUREMENT_ITERATIONS];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            scores[i] = iteration(benchmark);
+        }
+        benchmark.tearDown();
+
+        Result result = new Result(benchmark, scores);
+        System.out.printf(Locale.ROOT, "%14.3f +- %.3f us/op%n", result.mean(), result.error());
+        return result;
+    }
+
+    // Repeats the benchmark until the iteration has run for long enough and
+    // returns the average time per operation in microseconds
+    private static double iteration(Benchmark benchmark) throws Exception {
+        long elapsed = 0;
+        long operations = 0;
+        do {
+            benchmark.beforeInvocation();
+            long start = System.nanoTime();
+            operations += benchmark.invoke();
+            elapsed += System.nanoTime() - start;
+        } while (elapsed < ITERATION_MILLIS * 1_000_000);
+        return elapsed / 1_000.0 / operations;
+    }
+
+    // Benchmark base class: setup is untimed, invoke is timed and returns how
+    // many operations it performed
+    abstract static class Benchmark {
+        final String name;
+        final int size;
+        Path dir;
+
+        Benchmark(String name, int size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        void setup(Path dir) throws Exception {
+            this.dir = dir;
+        }
+
+        void beforeInvocation() throws Exception {
+        }
+
+        abstract long invoke() throws Exception;
+
+        void tearDown() throws Exception {
+        }
+    }
+
+    // Routines
+
+    static class LoadRoutines extends Benchmark {
+        RoutineJournal journal;
+
+        LoadRoutines(int size) {
+            super("routines.load", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            journal = Fixtures.routineJournal(dir, size);
+        }
+
+        @Override
+        long invoke() throws Exception {
+            sink += journal.load().size();
+            return 1;
+        }
+    }
+
+    static class SaveRoutines extends Benchmark {
+        RoutineJournal journal;
+        ArrayList<Routine> routines;
+
+        SaveRoutines(int size) {
+            super("routines.save", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            journal = Fixtures.routineJournal(dir, size);
+            routines = journal.load();
+        }
+
+        @Override
+        long invoke() throws Exception {
+            journal.replaceAll(routines);
+            return 1;
+        }
+    }
+
+    // Delete by name through the repository's name index, including the
+    // journal write, on a writer that does not hold writes back
+    static class DeleteRoutine extends Benchmark {
+        RoutineRepository repository;
+        int next;
+
+        DeleteRoutine(int size) {
+            super("routines.delete", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            repository = new RoutineRepository(Fixtures.routineJournal(dir, size, new PersistenceService(0)));
+        }
+
+        @Override
+        void beforeInvocation() throws Exception {
+            if (repository.size() < size / 2 + 1) {
+                PersistenceService.await(repository.replaceAll(Fixtures.routines(size)));
+                next = 0;
+            }
+        }
+
+        @Override
+        long invoke() throws Exception {
+            PersistenceService.await(repository.deleteByName("Routine " + (next++ * 7919 % size)));
+            return 1;
+        }
+    }
+
+    // Exercises
+
+    static class ExerciseFromString extends Benchmark {
+        String[] lines;
+
+        ExerciseFromString(int size) {
+            super("exercise.fromString", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            lines = new String[size];
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++) {
+                lines[i] = Fixtures.exercise(random, i).toString();
+            }
+        }
+
+        @Override
+        long invoke() {
+            long total = 0;
+            for (String line : lines) {
+                total += Exercise.fromString(line).getReps();
+            }
+            sink += total;
+            return lines.length;
+        }
+    }
+
+    static class ExerciseToString extends Benchmark {
+        Exercise[] exercises;
+
+        ExerciseToString(int size) {
+            super("exercise.toString", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            exercises = new Exercise[size];
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++) {
+                exercises[i] = Fixtures.exercise(random, i);
+            }
+        }
+
+        @Override
+        long invoke() {
+            long total = 0;
+            for (Exercise exercise : exercises) {
+                total += exercise.toString().length();
+            }
+            sink += total;
+            return exercises.length;
+        }
+    }
+
+    // Writes whole routines into one reused buffer; one operation is one routine
+    static class RoutineWriterThroughput extends Benchmark {
+        ArrayList<Routine> routines;
+        StringBuilder buffer = new StringBuilder(1 << 20);
+
+        RoutineWriterThroughput(int size) {
+            super("routines.writeBuffer", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            routines = Fixtures.routines(size);
+        }
+
+        @Override
+        long invoke() throws Exception {
+            buffer.setLength(0);
+            new RoutineWriter(buffer).writeRoutines(routines);
+            sink += buffer.length();
+            return routines.size();
+        }
+    }
+
+    // History
+
+    // Parses the old text log into the binary store
+    static class MigrateHistory extends Benchmark {
+        Path fixture;
+        Path legacyFile;
+        HistoryStore store;
+
+        MigrateHistory(int size) {
+            super("history.migrateText", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            fixture = Fixtures.legacyHistory(dir.resolve("fixture.txt"), size);
+            legacyFile = dir.resolve("workout_history.txt");
+            store = new HistoryStore(dir.resolve("history").toString());
+        }
+
+        @Override
+        void beforeInvocation() throws Exception {
+            Files.copy(fixture, legacyFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        @Override
+        long invoke() throws Exception {
+            store.migrateLegacyHistory(legacyFile.toString());
+            sink += store.size();
+            return 1;
+        }
+    }
+
+    static class ReadHistory extends Benchmark {
+        HistoryStore store;
+
+        ReadHistory(int size) {
+            super("history.readAll", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            store = Fixtures.historyStore(dir, size);
+        }
+
+        @Override
+        long invoke() {
+            long total = 0;
+            int count = store.size();
+            for (int i = 0; i < count; i++) {
+                total += store.get(i).getExerciseCount();
+            }
+            sink += total;
+            return 1;
+        }
+    }
+
+    static class SumHistoryDurations extends Benchmark {
+        HistoryStore store;
+
+        SumHistoryDurations(int size) {
+            super("history.totalDuration", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            store = Fixtures.historyStore(dir, size);
+        }
+
+        @Override
+        long invoke() {
+            sink += store.totalDurationSeconds();
+            return 1;
+        }
+    }
+
+    // The last 30 days of history: two index lookups plus a scan of the range
+    static class HistoryRangeQuery extends Benchmark {
+        HistoryStore store;
+        long from;
+        long to;
+
+        HistoryRangeQuery(int size) {
+            super("history.last30Days", size);
+        }
+
+        @Override
+        void setup(Path dir) throws Exception {
+            super.setup(dir);
+            store = Fixtures.historyStore(dir, size);
+            to = store.get(store.size() - 1).getTimestamp() + 1;
+            from = to - 30 * 86_400L;
+        }
+
+        @Override
+        long invoke() {
+            int start = store.indexOf(from);
+            int end = store.indexOf(to);
+            sink += store.totalDurationSeconds(start, end) + end - start;
+            return 1;
+        }
+    }
+
+    // Fixture generation
+
+    static class Fixtures {
+        static ArrayList<Routine> routines(int count) {
+            Random random = new Random(42);
+            ArrayList<Routine> routines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Routine routine = new Routine("Routine " + i);
+                for (int j = 0; j < EXERCISES_PER_ROUTINE; j++) {
+                    routine.addExercise(exercise(random, j));
+                }
+                routines.add(routine);
+            }
+            return routines;
+        }
+
+        static Exercise exercise(Random random, int index) {
+            return new Exercise("Exercise " + index, random.nextInt(40000) / 100.0,
+                    1 + random.nextInt(20), 1 + random.nextInt(6), random.nextInt(3));
+        }
+
+        static RoutineJournal routineJournal(Path dir, int count) throws IOException {
+            return routineJournal(dir, count, PersistenceService.getInstance());
+        }
+
+        static RoutineJournal routineJournal(Path dir, int count, PersistenceService writer) throws IOException {
+            RoutineJournal journal = new RoutineJournal(dir.resolve("routines.txt").toString(),
+                    dir.resolve("routines.journal").toString(), writer);
+            journal.replaceAll(routines(count));
+            return journal;
+        }
+
+        static Path legacyHistory(Path file, int lines) throws IOException {
+            LocalDateTime date = LocalDateTime.of(2015, 1, 1, 7, 0);
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                for (int i = 0; i < lines; i++) {
+                    HistoryRecord record = new HistoryRecord(HistoryRecord.toTimestamp(date.plusHours(i * 7L)),
+                            1800 + i % 3600, 0, "Routine " + i % 50, 3 + i % 5);
+                    writer.println(record);
+                }
+            }
+            return file;
+        }
+
+        static HistoryStore historyStore(Path dir, int records) throws IOException {
+            HistoryStore store = new HistoryStore(dir.resolve("history").toString());
+            long timestamp = HistoryRecord.toTimestamp(LocalDateTime.of(2015, 1, 1, 7, 0));
+            for (int i = 0; i < records; i++) {
+                store.appendUnforced("Routine " + i % 50, timestamp + i * 25_200L, 1800 + i % 3600, 3 + i % 5);
+            }
+            store.flush();
+            return store;
+        }
+    }
+
+    // Reporting
+
+    static class Result {
+        final Benchmark benchmark;
+        final double[] scores;
+
+        Result(Benchmark benchmark, double[] scores) {
+            this.benchmark = benchmark;
+            this.scores = scores;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double score : scores) {
+                sum += score;
+            }
+            return sum / scores.length;
+        }
+
+        // Half-width of a ~99.9% confidence interval, as JMH reports it
+        double error() {
+            if (scores.length < 2) {
+                return 0;
+            }
+            double mean = mean();
+            double squares = 0;
+            for (double score : scores) {
+                squares += (score - mean) * (score - mean);
+            }
+            double stdDev = Math.sqrt(squares / (scores.length - 1));
+            return 3.29 * stdDev / Math.sqrt(scores.length);
+        }
+    }
+
+    private static void writeJson(Path file, List<Result> results) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                StringBuilder raw = new StringBuilder();
+                for (int j = 0; j < result.scores.length; j++) {
+                    raw.append(j == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.6f", result.scores[j]));
+                }
+                writer.write(String.format(Locale.ROOT,
+                        "  {\n"
+                                + "    \"benchmark\": \"FitTrackBench.%s\",\n"
+                                + "    \"mode\": \"avgt\",\n"
+                                + "    \"warmupIterations\": %d,\n"
+                                + "    \"measurementIterations\": %d,\n"
+                                + "    \"params\": { \"size\": \"%d\" },\n"
+                                + "    \"primaryMetric\": {\n"
+                                + "      \"score\": %.6f,\n"
+                                + "      \"scoreError\": %.6f,\n"
+                                + "      \"scoreUnit\": \"us/op\",\n"
+                                + "      \"rawData\": [[%s]]\n"
+                                + "    }\n"
+                                + "  }%s\n",
+                        result.benchmark.name, WARMUP_ITERATIONS, MEASUREMENT_ITERATIONS, result.benchmark.size,
+                        result.mean(), result.error(), raw, i < results.size() - 1 ? "," : ""));
+            }
+            writer.write("]\n");
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    // Mapped history segments cannot be deleted on every platform
+                }
+            }
+        }
+    }
+}
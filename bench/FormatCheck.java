@@ -0,0 +1,329 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// Behaviour checks for the binary on-disk formats. Each format is written,
+// read back, damaged the way a crash would leave it and reopened. There is no
+// test framework, so this is a plain program: it prints every check and
+// exits with 1 if any failed.
+//
+//   javac -d bin core/src/*.java src/*.java bench/*.java
+//   java -cp bin FormatCheck
+public class FormatCheck {
+    private static int checks;
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        Path workDir = Files.createTempDirectory("fittrack-check");
+        try {
+            checkHistoryStore(Files.createDirectory(workDir.resolve("history")));
+            checkRoutineJournal(Files.createDirectory(workDir.resolve("routines")));
+            checkSessionLog(Files.createDirectory(workDir.resolve("sessions")));
+        } finally {
+            deleteRecursively(workDir);
+        }
+        System.out.println((checks - failures) + " of " + checks + " checks passed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void check(String what, boolean passed) {
+        checks++;
+        if (!passed) {
+            failures++;
+        }
+        System.out.println((passed ? "ok      " : "FAILED  ") + what);
+    }
+
+    private static void expect(String what, Object expected, Object actual) {
+        check(what + (Objects.equals(expected, actual) ? "" : " (expected " + expected + ", got " + actual + ")"),
+                Objects.equals(expected, actual));
+    }
+
+    // History segments
+
+    private static void checkHistoryStore(Path dir) throws IOException {
+        HistoryStore history = new HistoryStore(dir.toString());
+        history.append("Push", 1_700_000_000L, 3600, 5);
+        history.append("Pull", 1_700_090_000L, 2700, 4);
+        history.append("Push", 1_700_180_000L, 3000, 5);
+
+        HistoryStore reopened = new HistoryStore(dir.toString());
+        expect("history: size survives a reopen", 3, reopened.size());
+        // Stores from before segments.list number their segments from zero
+        Files.delete(dir.resolve("segments.list"));
+        expect("history: a store without a segment list opens", 3, new HistoryStore(dir.toString()).size());
+        HistoryRecord record = reopened.get(1);
+        check("history: a record reads back field for field", record.getTimestamp() == 1_700_090_000L
+                && record.getDurationSeconds() == 2700 && record.getRoutineName().equals("Pull")
+                && record.getExerciseCount() == 4);
+        expect("history: routine names share dictionary ids", reopened.get(0).getRoutineId(),
+                reopened.get(2).getRoutineId());
+
+        // A crash after the record's columns were written but before the
+        // count was bumped leaves the record uncommitted
+        Path segment = dir.resolve("segment-00000.seg");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, 1_700_270_000L),
+                    HistoryStore.HEADER_SIZE + 3 * Long.BYTES);
+        }
+        reopened = new HistoryStore(dir.toString());
+        expect("history: a record without its count bump is not there", 3, reopened.size());
+
+        // Appending after the reopen overwrites the torn slot
+        reopened.append("Legs", 1_700_360_000L, 4000, 6);
+        reopened = new HistoryStore(dir.toString());
+        expect("history: appending after a reopen continues the store", 4, reopened.size());
+        expect("history: the appended record replaced the torn one", 1_700_360_000L,
+                reopened.get(3).getTimestamp());
+
+        // Records spill over into a second segment
+        for (int i = reopened.size(); i < HistoryStore.SEGMENT_CAPACITY + 10; i++) {
+            reopened.appendUnforced("Cardio", 1_700_400_000L + i * 60L, 1800, 1);
+        }
+        reopened.flush();
+        reopened = new HistoryStore(dir.toString());
+        expect("history: size across two segments", HistoryStore.SEGMENT_CAPACITY + 10, reopened.size());
+
+        // Older workouts imported after newer ones are sorted into place
+        reopened.appendUnforced("Import", 1_600_000_000L, 100, 1);
+        reopened.appendUnforced("Import", 1_700_090_000L, 200, 1);
+        reopened.flush();
+        check("history: an older workout unsorts the store", !reopened.isSorted());
+        reopened.sortByTime();
+        reopened = new HistoryStore(dir.toString());
+        check("history: sorted and reopened", reopened.isSorted() && inTimeOrder(reopened));
+        expect("history: the sort keeps every record", HistoryStore.SEGMENT_CAPACITY + 12, reopened.size());
+        expect("history: the oldest import comes first", "Import", reopened.get(0).getRoutineName());
+        expect("history: equal timestamps keep their order", "Pull",
+                reopened.get(reopened.indexOf(1_700_090_000L)).getRoutineName());
+
+        check("history: the sort deletes the segments it replaced", !Files.exists(segment));
+
+        // A sort that crashed before switching the segment list leaves files
+        // the list does not name; they are dropped
+        Path unlisted = dir.resolve("segment-09999.seg");
+        Files.write(unlisted, new byte[HistoryStore.SEGMENT_SIZE]);
+        reopened = new HistoryStore(dir.toString());
+        check("history: an uncommitted sort is dropped", !Files.exists(unlisted)
+                && reopened.size() == HistoryStore.SEGMENT_CAPACITY + 12 && inTimeOrder(reopened));
+    }
+
+    // Routine journal
+
+    private static void checkRoutineJournal(Path dir) throws Exception {
+        String snapshot = dir.resolve("routines.txt").toString();
+        String journalFile = dir.resolve("routines.journal").toString();
+        RoutineJournal journal = new RoutineJournal(snapshot, journalFile);
+        journal.load();
+        Routine push = routine("Push", "Bench Press", 60.5);
+        Routine pull = routine("Pull", "Row", 50);
+        Routine legs = routine("Legs", "Squat", 100);
+        journal.recordSave(push);
+        journal.recordSave(pull);
+        journal.recordSave(legs);
+        pull.addExercise(new Exercise("Curl", 12.25, 10, 3));
+        journal.recordSave(pull);
+        journal.recordDelete(legs.getId());
+
+        expect("routines: journal replays adds, updates and deletes", "Push[Bench Press] Pull[Row, Curl]",
+                describe(loadRoutines(snapshot, journalFile)));
+        expect("routines: weights read back exactly", 12.25,
+                loadRoutines(snapshot, journalFile).get(1).getExercises().get(1).getWeight());
+
+        // A crash mid-append leaves a partial record at the end. The size is
+        // checked right after the load, before the compaction it schedules.
+        journal = new RoutineJournal(snapshot, journalFile);
+        journal.load();
+        drainWriter();
+        journal.recordSave(routine("Arms", "Curl", 15));
+        long intact = Files.size(Path.of(journalFile));
+        Files.write(Path.of(journalFile), new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 1, 0, 0 }, StandardOpenOption.APPEND);
+        List<Routine> recovered = new RoutineJournal(snapshot, journalFile).load();
+        expect("routines: a torn record is cut off the journal", intact, Files.size(Path.of(journalFile)));
+        drainWriter();
+        expect("routines: a torn record is skipped", "Push[Bench Press] Pull[Row, Curl] Arms[Curl]",
+                describe(recovered));
+
+        // A record whose checksum does not match is dropped too
+        journal = new RoutineJournal(snapshot, journalFile);
+        journal.load();
+        drainWriter();
+        journal.recordSave(routine("Chest", "Fly", 15));
+        long beforeDamage = Files.size(Path.of(journalFile));
+        try (FileChannel channel = FileChannel.open(Path.of(journalFile), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 'X' }), beforeDamage - 2);
+        }
+        expect("routines: a record with a bad checksum is dropped", "Push[Bench Press] Pull[Row, Curl] Arms[Curl]",
+                describe(loadRoutines(snapshot, journalFile)));
+
+        // Appending after the damaged record was cut off
+        journal = new RoutineJournal(snapshot, journalFile);
+        journal.load();
+        drainWriter();
+        journal.recordSave(routine("Core", "Plank", 0));
+        expect("routines: records appended after recovery are read back",
+                "Push[Bench Press] Pull[Row, Curl] Arms[Curl] Core[Plank]",
+                describe(loadRoutines(snapshot, journalFile)));
+
+        // Compaction folds the journal into the snapshot
+        journal = new RoutineJournal(snapshot, journalFile);
+        journal.load();
+        drainWriter();
+        journal.recordDelete(push.getId());
+        journal.compact();
+        expect("routines: compaction empties the journal", 0L, Files.size(Path.of(journalFile)));
+        expect("routines: compaction keeps every routine", "Pull[Row, Curl] Arms[Curl] Core[Plank]",
+                describe(loadRoutines(snapshot, journalFile)));
+
+        List<Routine> replacement = new ArrayList<>();
+        replacement.add(routine("Full Body", "Deadlift", 120));
+        journal.replaceAll(replacement);
+        expect("routines: replaceAll writes a new snapshot", "Full Body[Deadlift]",
+                describe(loadRoutines(snapshot, journalFile)));
+    }
+
+    private static Routine routine(String name, String exercise, double weight) {
+        Routine routine = new Routine(name);
+        routine.addExercise(new Exercise(exercise, weight, 8, 3));
+        return routine;
+    }
+
+    // Loads with a fresh journal, then waits for the compaction a replayed
+    // journal schedules, so it cannot rewrite the files under the next check
+    private static List<Routine> loadRoutines(String snapshot, String journalFile) throws Exception {
+        List<Routine> routines = new RoutineJournal(snapshot, journalFile).load();
+        drainWriter();
+        return routines;
+    }
+
+    private static void drainWriter() throws InterruptedException {
+        PersistenceService.getInstance().flush(5000);
+    }
+
+    private static String describe(List<Routine> routines) {
+        StringBuilder text = new StringBuilder();
+        for (Routine routine : routines) {
+            List<String> exercises = new ArrayList<>();
+            for (Exercise exercise : routine.getExercises()) {
+                exercises.add(exercise.getName());
+            }
+            text.append(text.length() == 0 ? "" : " ").append(routine.getName()).append(exercises);
+        }
+        return text.toString();
+    }
+
+    // Session logs
+
+    private static void checkSessionLog(Path dir) throws Exception {
+        Routine routine = routine("Push", "Bench Press", 60.5);
+        routine.setId(7);
+        routine.addExercise(new Exercise("Dips", 0, 12, 4));
+        Exercise bench = routine.getExercises().get(0);
+        Exercise dips = routine.getExercises().get(1);
+
+        SessionLog log = SessionLog.start(dir.toString(), routine);
+        log.setCompleted(bench, 1);
+        log.setCompleted(dips, 1);
+        log.setUndone(dips, 1);
+        log.finish();
+        SessionLog.Session session = awaitEvents(log.getFile(), 4);
+        check("sessions: the header reads back", session.getRoutineId() == 7
+                && session.getRoutineName().equals("Push") && session.getExercises().size() == 2
+                && session.getExercises().get(0).getWeight() == 60.5 && session.getExercises().get(1).getSets() == 4);
+        expect("sessions: events read back in order", "1:0:1 1:1:1 2:1:1 3:0:0", describe(session));
+        check("sessions: a finished session reads as finished", session.isFinished());
+
+        // A crash mid-commit leaves a partial batch at the end
+        log = SessionLog.start(dir.toString(), routine);
+        log.setCompleted(bench, 1);
+        log.setCompleted(bench, 2);
+        log.close();
+        Path file = awaitEvents(log.getFile(), 2).getFile();
+        long intact = Files.size(file);
+        Files.write(file, new byte[] { 0, 0, 0, 3, 1, 2, 3, 4, 9, 9 }, StandardOpenOption.APPEND);
+        session = SessionLog.read(file);
+        expect("sessions: a torn batch is skipped", "1:0:1 1:0:2", describe(session));
+        expect("sessions: the intact length stops before the torn batch", intact, session.getValidLength());
+        check("sessions: an unfinished session reads as unfinished", !session.isFinished());
+
+        // Resuming cuts the torn batch off before appending
+        log = SessionLog.resume(dir.toString(), file.getFileName().toString(), routine, 60_000_000_000L);
+        expect("sessions: resume continues the same file", file, log.getFile());
+        log.setCompleted(bench, 3);
+        log.setCompleted(dips, 1);
+        log.close();
+        session = awaitEvents(file, 4);
+        expect("sessions: events logged after a resume are read back", "1:0:1 1:0:2 1:0:3 1:1:1",
+                describe(session));
+        expect("sessions: the file has no damaged bytes left", Files.size(file), session.getValidLength());
+        check("sessions: resumed events continue the elapsed time",
+                session.getEvents().get(2).getElapsedMillis() >= 60_000);
+
+        log = SessionLog.resume(dir.toString(), file.getFileName().toString(), routine, 120_000_000_000L);
+        log.finish();
+        check("sessions: a resumed session can be finished", awaitEvents(file, 5).isFinished());
+        SessionLog resumedFinished = SessionLog.resume(dir.toString(), file.getFileName().toString(), routine, 0);
+        check("sessions: a finished log is not resumed", !resumedFinished.getFile().equals(file));
+        resumedFinished.close();
+    }
+
+    // The log commits on its own thread, so this polls until the events are on disk
+    private static SessionLog.Session awaitEvents(Path file, int count) throws Exception {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (true) {
+            try {
+                SessionLog.Session session = SessionLog.read(file);
+                if (session.getEvents().size() >= count || System.nanoTime() > deadline) {
+                    return session;
+                }
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    // Each event as type:exercise:set
+    private static String describe(SessionLog.Session session) {
+        StringBuilder text = new StringBuilder();
+        for (SessionEvent event : session.getEvents()) {
+            text.append(text.length() == 0 ? "" : " ").append(event.getType()).append(':')
+                    .append(event.getExerciseIndex()).append(':').append(event.getSetNumber());
+        }
+        return text.toString();
+    }
+
+    private static boolean inTimeOrder(HistoryStore history) {
+        for (int i = 1; i < history.size(); i++) {
+            if (history.get(i).getTimestamp() < history.get(i - 1).getTimestamp()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    // Mapped history segments cannot be deleted on every platform
+                }
+            }
+        }
+    }
+}
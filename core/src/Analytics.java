@@ -0,0 +1,235 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+// Computes personal records and training volume from the session logs. The
+// logs are scanned in parallel on the fork/join pool, split into time
+// segments (log files sort by start time), and the partial reports are
+// merged. Parsed sessions are cached per file, and the finished report is
+// cached until a session log commits new events, so a repeated request is
+// free and a new session only costs parsing that one file.
+public class Analytics {
+    // Sessions per leaf task; each leaf parses files, so keep it coarse
+    private static final int SESSIONS_PER_TASK = 8;
+    private static final Metrics.Timer PARSE_TIMER = Metrics.getInstance().timer("sessions.parse");
+
+    private final Path sessionsDir;
+    private final ZoneId zone;
+    private final ForkJoinPool pool;
+    private final Map<Path, ParsedSession> parsed = new ConcurrentHashMap<>();
+    private volatile AnalyticsReport cachedReport;
+    private volatile long generation; // bumped whenever the cached report goes stale
+
+    public Analytics(String sessionsDir, ZoneId zone, ForkJoinPool pool) {
+        this.sessionsDir = Paths.get(sessionsDir);
+        this.zone = zone;
+        this.pool = pool;
+    }
+
+    // Drops the cached report; parsed sessions are kept and revalidated by size
+    public void invalidate() {
+        generation++;
+        cachedReport = null;
+    }
+
+    // Computes the report in the background. Cancelling the future stops the scan.
+    public CompletableFuture<AnalyticsReport> computeAsync() {
+        AnalyticsReport cached = cachedReport;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<AnalyticsReport> result = new CompletableFuture<>();
+        pool.execute(() -> {
+            try {
+                result.complete(compute(result::isCancelled));
+            } catch (CancellationException e) {
+                result.cancel(false);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    // Computes the report on the calling thread's pool; throws
+    // CancellationException once cancelled returns true
+    public AnalyticsReport compute(BooleanSupplier cancelled) throws IOException {
+        AnalyticsReport cached = cachedReport;
+        if (cached != null) {
+            return cached;
+        }
+        long startGeneration = generation;
+        List<Path> files = listSessionLogs();
+        AnalyticsReport report = pool.invoke(new ScanTask(files, 0, files.size(), cancelled));
+        if (generation == startGeneration) {
+            cachedReport = report;
+        }
+        return report;
+    }
+
+    private List<Path> listSessionLogs() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(sessionsDir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(sessionsDir, "session-*.log")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        // session-<start millis>.log: sorting by start time gives time-ordered segments
+        files.sort((a, b) -> Long.compare(startMillis(a), startMillis(b)));
+        return files;
+    }
+
+    private static long startMillis(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring("session-".length(), name.length() - ".log".length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // The session's completed sets, reusing the cached parse while the file is unchanged
+    private ParsedSession parse(Path file) {
+        try {
+            long size = Files.size(file);
+            ParsedSession session = parsed.get(file);
+            if (session == null || session.fileSize != size) {
+                session = PARSE_TIMER.time(() -> new ParsedSession(SessionLog.read(file), size));
+                parsed.put(file, session);
+            }
+            return session;
+        } catch (IOException e) {
+            System.err.println("Warning: Skipping session log " + file.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private class ScanTask extends RecursiveTask<AnalyticsReport> {
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+        private final BooleanSupplier cancelled;
+
+        ScanTask(List<Path> files, int from, int to, BooleanSupplier cancelled) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected AnalyticsReport compute() {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            if (to - from > SESSIONS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ScanTask earlier = new ScanTask(files, from, middle, cancelled);
+                earlier.fork();
+                AnalyticsReport report = new ScanTask(files, middle, to, cancelled).compute();
+                report.merge(earlier.join());
+                return report;
+            }
+
+            AnalyticsReport report = new AnalyticsReport();
+            for (int i = from; i < to; i++) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException();
+                }
+                ParsedSession session = parse(files.get(i));
+                if (session != null) {
+                    session.addTo(report, zone);
+                }
+            }
+            return report;
+        }
+    }
+
+    // Completed sets of one session, after undos, in compact columns
+    private static class ParsedSession {
+        final long fileSize;
+        final String routineName;
+        final String[] exerciseNames;
+        final long startMillis;
+        final int[] exercise;
+        final double[] weight;
+        final int[] reps;
+        final int[] elapsedMillis;
+
+        ParsedSession(SessionLog.Session session, long fileSize) {
+            this.fileSize = fileSize;
+            this.routineName = session.getRoutineName();
+            this.startMillis = session.getStartMillis();
+            List<Exercise> exercises = session.getExercises();
+            exerciseNames = new String[exercises.size()];
+            for (int i = 0; i < exerciseNames.length; i++) {
+                exerciseNames[i] = exercises.get(i).getName();
+            }
+
+            // An undo takes back the set with the same exercise and set number
+            Map<Long, SessionEvent> completed = new HashMap<>();
+            List<SessionEvent> order = new ArrayList<>();
+            for (SessionEvent event : session.getEvents()) {
+                if (event.getExerciseIndex() >= exerciseNames.length) {
+                    continue;
+                }
+                long key = ((long) event.getExerciseIndex() << 32) | event.getSetNumber();
+                if (event.getType() == SessionEvent.SET_COMPLETED) {
+                    completed.put(key, event);
+                    order.add(event);
+                } else if (event.getType() == SessionEvent.SET_UNDONE) {
+                    completed.remove(key);
+                }
+            }
+
+            int count = 0;
+            exercise = new int[completed.size()];
+            weight = new double[completed.size()];
+            reps = new int[completed.size()];
+            elapsedMillis = new int[completed.size()];
+            for (SessionEvent event : order) {
+                long key = ((long) event.getExerciseIndex() << 32) | event.getSetNumber();
+                if (completed.get(key) == event) {
+                    exercise[count] = event.getExerciseIndex();
+                    weight[count] = event.getWeight();
+                    reps[count] = event.getReps();
+                    elapsedMillis[count] = event.getElapsedMillis();
+                    count++;
+                }
+            }
+        }
+
+        void addTo(AnalyticsReport report, ZoneId zone) {
+            report.addSession();
+            LocalDate date = null;
+            long dayEnd = Long.MIN_VALUE;
+            for (int i = 0; i < exercise.length; i++) {
+                long time = startMillis + elapsedMillis[i];
+                // Sessions rarely cross midnight; only convert again when they do
+                if (date == null || time >= dayEnd) {
+                    date = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+                    dayEnd = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                }
+                report.addSet(routineName, exerciseNames[exercise[i]], weight[i], reps[i], time, date);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Personal records and training volume computed from the session logs.
+// Volume is weight x reps summed over completed sets, grouped by the Monday
+// of each week and by calendar month.
+public class AnalyticsReport {
+    private final Map<String, PersonalRecord> records = new HashMap<>();
+    private final Map<String, TreeMap<LocalDate, Double>> weeklyByExercise = new HashMap<>();
+    private final Map<String, TreeMap<YearMonth, Double>> monthlyByExercise = new HashMap<>();
+    private final Map<String, TreeMap<LocalDate, Double>> weeklyByRoutine = new HashMap<>();
+    private final Map<String, TreeMap<YearMonth, Double>> monthlyByRoutine = new HashMap<>();
+    private int sessionCount;
+    private long setCount;
+
+    // Epley formula; a single rep is the weight itself
+    public static double estimateOneRepMax(double weight, int reps) {
+        if (reps <= 0) {
+            return 0;
+        }
+        return reps == 1 ? weight : weight * (1 + reps / 30.0);
+    }
+
+    void addSession() {
+        sessionCount++;
+    }
+
+    void addSet(String routine, String exercise, double weight, int reps, long timeMillis, LocalDate date) {
+        setCount++;
+        records.computeIfAbsent(exercise, PersonalRecord::new).add(weight, reps, timeMillis);
+
+        double volume = weight * reps;
+        LocalDate week = date.minusDays(date.getDayOfWeek().getValue() - 1);
+        YearMonth month = YearMonth.from(date);
+        weeklyByExercise.computeIfAbsent(exercise, k -> new TreeMap<>()).merge(week, volume, Double::sum);
+        monthlyByExercise.computeIfAbsent(exercise, k -> new TreeMap<>()).merge(month, volume, Double::sum);
+        weeklyByRoutine.computeIfAbsent(routine, k -> new TreeMap<>()).merge(week, volume, Double::sum);
+        monthlyByRoutine.computeIfAbsent(routine, k -> new TreeMap<>()).merge(month, volume, Double::sum);
+    }
+
+    // Folds another partial report into this one
+    void merge(AnalyticsReport other) {
+        sessionCount += other.sessionCount;
+        setCount += other.setCount;
+        for (PersonalRecord record : other.records.values()) {
+            PersonalRecord mine = records.get(record.exercise);
+            if (mine == null) {
+                records.put(record.exercise, record);
+            } else {
+                mine.merge(record);
+            }
+        }
+        mergeSeries(weeklyByExercise, other.weeklyByExercise);
+        mergeSeries(monthlyByExercise, other.monthlyByExercise);
+        mergeSeries(weeklyByRoutine, other.weeklyByRoutine);
+        mergeSeries(monthlyByRoutine, other.monthlyByRoutine);
+    }
+
+    private static <K> void mergeSeries(Map<String, TreeMap<K, Double>> into, Map<String, TreeMap<K, Double>> from) {
+        for (Map.Entry<String, TreeMap<K, Double>> entry : from.entrySet()) {
+            TreeMap<K, Double> series = into.get(entry.getKey());
+            if (series == null) {
+                into.put(entry.getKey(), entry.getValue());
+            } else {
+                entry.getValue().forEach((period, volume) -> series.merge(period, volume, Double::sum));
+            }
+        }
+    }
+
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    public long getSetCount() {
+        return setCount;
+    }
+
+    public Map<String, PersonalRecord> getPersonalRecords() {
+        return Collections.unmodifiableMap(records);
+    }
+
+    public PersonalRecord getPersonalRecord(String exercise) {
+        return records.get(exercise);
+    }
+
+    // Volume per week, keyed by the Monday the week starts on
+    public Map<LocalDate, Double> getWeeklyVolume(String exercise) {
+        return unmodifiable(weeklyByExercise.get(exercise));
+    }
+
+    public Map<YearMonth, Double> getMonthlyVolume(String exercise) {
+        return unmodifiable(monthlyByExercise.get(exercise));
+    }
+
+    public Map<LocalDate, Double> getWeeklyRoutineVolume(String routine) {
+        return unmodifiable(weeklyByRoutine.get(routine));
+    }
+
+    public Map<YearMonth, Double> getMonthlyRoutineVolume(String routine) {
+        return unmodifiable(monthlyByRoutine.get(routine));
+    }
+
+    private static <K> Map<K, Double> unmodifiable(TreeMap<K, Double> series) {
+        return series == null ? Collections.emptyMap() : Collections.unmodifiableMap(series);
+    }
+
+    // Best lifts of one exercise
+    public static class PersonalRecord {
+        private final String exercise;
+        private double heaviestWeight;
+        private int heaviestReps;
+        private long heaviestMillis;
+        private double bestOneRepMax;
+        private long bestOneRepMaxMillis;
+
+        PersonalRecord(String exercise) {
+            this.exercise = exercise;
+        }
+
+        void add(double weight, int reps, long timeMillis) {
+            if (weight > heaviestWeight || (weight == heaviestWeight && reps > heaviestReps)) {
+                heaviestWeight = weight;
+                heaviestReps = reps;
+                heaviestMillis = timeMillis;
+            }
+            double oneRepMax = estimateOneRepMax(weight, reps);
+            if (oneRepMax > bestOneRepMax) {
+                bestOneRepMax = oneRepMax;
+                bestOneRepMaxMillis = timeMillis;
+            }
+        }
+
+        void merge(PersonalRecord other) {
+            if (other.heaviestWeight > heaviestWeight
+                    || (other.heaviestWeight == heaviestWeight && other.heaviestReps > heaviestReps)) {
+                heaviestWeight = other.heaviestWeight;
+                heaviestReps = other.heaviestReps;
+                heaviestMillis = other.heaviestMillis;
+            }
+            if (other.bestOneRepMax > bestOneRepMax) {
+                bestOneRepMax = other.bestOneRepMax;
+                bestOneRepMaxMillis = other.bestOneRepMaxMillis;
+            }
+        }
+
+        public String getExercise() {
+            return exercise;
+        }
+
+        public double getHeaviestWeight() {
+            return heaviestWeight;
+        }
+
+        public int getHeaviestReps() {
+            return heaviestReps;
+        }
+
+        public long getHeaviestMillis() {
+            return heaviestMillis;
+        }
+
+        public double getBestOneRepMax() {
+            return bestOneRepMax;
+        }
+
+        public long getBestOneRepMaxMillis() {
+            return bestOneRepMaxMillis;
+        }
+    }
+}
@@ -1,5 +1,4 @@
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -8,8 +7,8 @@ public class AppPaths {
     private static final AppPaths instance = new AppPaths();
     private final String baseDir;
     private final String configDir;
-    private final String workoutHistoryFile;
-    private final String routinesFile;
+    private final String membersDir;
+    private final String membersIndexFile;
     private final String soundsDir;
     private final String pingSound;
     private final String bellSound;
@@ -27,8 +26,9 @@ public class AppPaths {
          soundsDir = Paths.get(baseDir, "sounds").toString();
          imagesDir = Paths.get(baseDir, "images").toString();
  
-         workoutHistoryFile = Paths.get(configDir, "workout_history.txt").toString();
-         routinesFile = Paths.get(configDir, "routines.txt").toString();
+         // Member data lives in Profile; the default member keeps config/ itself
+         membersDir = Paths.get(configDir, "members").toString();
+         membersIndexFile = Paths.get(configDir, "members.txt").toString();
          pingSound = Paths.get(soundsDir, "ping.wav").toString();
          bellSound = Paths.get(soundsDir, "bell.wav").toString();
          playImage = Paths.get(imagesDir, "play.png").toString();
@@ -44,26 +44,22 @@ public class AppPaths {
     }
     
     private void createRequiredPaths() {
-        try {
-            // Create directories if they don't exist
-            createDirectoryIfNotExists(configDir);
-            createDirectoryIfNotExists(soundsDir);
-            createDirectoryIfNotExists(imagesDir);
-            
-            // Create config files if they don't exist
-            createFileIfNotExists(workoutHistoryFile);
-            createFileIfNotExists(routinesFile);
-            
-            // Check if resource files exist
-            checkFile(pingSound, "ping.wav");
-            checkFile(bellSound, "bell.wav");
-            checkFile(playImage, "play.png");
-            checkFile(pauseImage, "pause.png");
-            checkFile(trashImage, "trash.png");
-            
-        } catch (IOException e) {
-            System.err.println("Error creating required paths: " + e.getMessage());
-        }
+        // Create directories if they don't exist; each member's own
+        // directories are created when the profile is first opened
+        createDirectoryIfNotExists(configDir);
+        createDirectoryIfNotExists(soundsDir);
+        createDirectoryIfNotExists(imagesDir);
+        createDirectoryIfNotExists(membersDir);
+    }
+
+    // Warns about missing resource files. Kept out of the constructor so the
+    // startup pipeline can run it in the background.
+    public void verifyResources() {
+        checkFile(pingSound, "ping.wav");
+        checkFile(bellSound, "bell.wav");
+        checkFile(playImage, "play.png");
+        checkFile(pauseImage, "pause.png");
+        checkFile(trashImage, "trash.png");
     }
     
     private void createDirectoryIfNotExists(String dirPath) {
@@ -73,12 +69,6 @@ public class AppPaths {
         }
     }
     
-    private void createFileIfNotExists(String filePath) throws IOException {
-        File file = new File(filePath);
-        if (!file.exists()) {
-            file.createNewFile();
-        }
-    }
     private String findResourcesDirectory() {
         // Start with the current working directory
         Path currentPath = Paths.get("").toAbsolutePath();
@@ -152,14 +142,14 @@ public class AppPaths {
                Files.exists(path.resolve("Main.java")) &&
                Files.exists(path.resolve("AppPaths.java"));
     }
-    public String getWorkoutHistoryPath() {
-        return workoutHistoryFile;
+    public String getMembersDir() {
+        return membersDir;
     }
 
-    public String getRoutinesPath() {
-        return routinesFile;
+    public String getMembersIndexPath() {
+        return membersIndexFile;
     }
-    
+
     public String getConfigDir() {
         return configDir;
     }
@@ -0,0 +1,47 @@
+// Fixed-size Bloom filter over 64-bit keys. mightContain() never misses a key
+// that was added and is wrong for roughly 1% of other keys at ten bits per
+// expected key, so it can rule most lookups out without touching the data.
+public class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] words;
+    private final long bitCount;
+
+    public BloomFilter(long expectedKeys) {
+        long bits = Math.max(1024, expectedKeys * BITS_PER_KEY);
+        words = new long[(int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64)];
+        bitCount = words.length * 64L;
+    }
+
+    public void add(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // MurmurHash3 finalizer, spreads similar keys such as nearby timestamps
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,1000 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+
+// Streaming import and export of routines and workout history as CSV or JSON.
+// Exports write one record at a time straight from the stores into a temp
+// file that replaces the target only when complete.
+//
+// History imports read the file in chunks of rows; each chunk is parsed on
+// the fork/join pool while the next one is read, and parsed chunks are applied
+// in file order. Only a few chunks are in memory at once, so a file of any
+// size imports in bounded memory. A Bloom filter over the workouts already in
+// the history lets new workouts through without a lookup; only the rare
+// possible match is checked exactly through the history's day index.
+//
+// CSV columns are found by header name, so exports of other trackers work
+// as long as they have a date and a workout name column. Files with one row
+// per set (an exercise name column but no exercise count) are folded into
+// one workout per consecutive date and name.
+public class DataTransfer {
+    public enum Format {
+        CSV, JSON;
+
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json") ? JSON : CSV;
+        }
+    }
+
+    // Called with bytes (imports) or records (exports) done so far, from the
+    // transfer thread or, for history imports, the persistence writer
+    public interface Progress {
+        void update(long done, long total);
+    }
+
+    public interface Task {
+        Result run(BooleanSupplier cancelled) throws IOException;
+    }
+
+    static final int CHUNK_ROWS = 4096;
+    // Workouts an import keeps exact keys for before it sorts the history
+    // again so its own day index can answer for them
+    private static final int IMPORT_KEYS_PER_SORT = 8 * CHUNK_ROWS;
+    // One sample per parsed chunk of CHUNK_ROWS rows
+    private static final Metrics.Timer PARSE_TIMER = Metrics.getInstance().timer("history.parseChunk");
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_TIME_MINUTES = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // Column roles, found from header names (CSV) or keys (JSON)
+    private static final int DATE = 0;
+    private static final int ROUTINE = 1;
+    private static final int DURATION = 2;
+    private static final int EXERCISES = 3;
+    private static final int EXERCISE_NAME = 4;
+    private static final int WEIGHT = 5;
+    private static final int REPS = 6;
+    private static final int SETS = 7;
+    // Header name, lowercased with everything but letters and digits removed -> role
+    private static final Map<String, Integer> COLUMNS = new HashMap<>();
+
+    static {
+        for (String name : new String[] { "date", "datetime", "start", "starttime", "startdate", "timestamp",
+                "workoutdate" }) {
+            COLUMNS.put(name, DATE);
+        }
+        for (String name : new String[] { "routine", "routinename", "workout", "workoutname", "title" }) {
+            COLUMNS.put(name, ROUTINE);
+        }
+        for (String name : new String[] { "duration", "durationseconds", "durations", "seconds" }) {
+            COLUMNS.put(name, DURATION);
+        }
+        for (String name : new String[] { "exercises", "exercisecount" }) {
+            COLUMNS.put(name, EXERCISES);
+        }
+        for (String name : new String[] { "exercise", "exercisename" }) {
+            COLUMNS.put(name, EXERCISE_NAME);
+        }
+        COLUMNS.put("weight", WEIGHT);
+        COLUMNS.put("reps", REPS);
+        COLUMNS.put("sets", SETS);
+    }
+
+    private final HistoryStore history;
+    private final RoutineRepository routines;
+    private final ForkJoinPool pool;
+    private final PersistenceService writer;
+
+    public DataTransfer(HistoryStore history, RoutineRepository routines, ForkJoinPool pool) {
+        this(history, routines, pool, PersistenceService.getInstance());
+    }
+
+    public DataTransfer(HistoryStore history, RoutineRepository routines, ForkJoinPool pool,
+            PersistenceService writer) {
+        this.history = history;
+        this.routines = routines;
+        this.pool = pool;
+        this.writer = writer;
+    }
+
+    // Runs a transfer on its own thread. Cancelling the future stops it at the
+    // next chunk; what was imported by then is kept.
+    public static CompletableFuture<Result> runAsync(Task task) {
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(task.run(result::isCancelled));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, "data-transfer");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    // Export
+
+    public Result exportHistory(Path file, Progress progress, BooleanSupplier cancelled) throws IOException {
+        Format format = Format.of(file);
+        int count = history.size();
+        return writeAtomically(file, writer -> {
+            writer.write(format == Format.CSV ? "date,routine,duration_seconds,exercises\n" : "[\n");
+            for (int i = 0; i < count; i++) {
+                if (i % CHUNK_ROWS == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return Result.cancelled(i);
+                    }
+                    progress.update(i, count);
+                }
+                HistoryRecord record = history.get(i);
+                if (format == Format.CSV) {
+                    writer.write(record.getFormattedDate());
+                    writer.write(',');
+                    writeCsvField(writer, record.getRoutineName());
+                    writer.write("," + record.getDurationSeconds() + "," + record.getExerciseCount() + "\n");
+                } else {
+                    writer.write("{\"date\":\"" + record.getFormattedDate() + "\",\"routine\":");
+                    writeJsonString(writer, record.getRoutineName());
+                    writer.write(",\"durationSeconds\":" + record.getDurationSeconds() + ",\"exercises\":"
+                            + record.getExerciseCount() + (i + 1 < count ? "},\n" : "}\n"));
+                }
+            }
+            if (format == Format.JSON) {
+                writer.write("]\n");
+            }
+            progress.update(count, count);
+            return new Result(count, 0, 0, false);
+        });
+    }
+
+    public Result exportRoutines(Path file, Progress progress, BooleanSupplier cancelled) throws IOException {
+        Format format = Format.of(file);
+        List<Routine> all = routines.getAll();
+        return writeAtomically(file, writer -> {
+            writer.write(format == Format.CSV ? "routine,exercise,weight,reps,sets\n" : "[\n");
+            for (int i = 0; i < all.size(); i++) {
+                if (cancelled.getAsBoolean()) {
+                    return Result.cancelled(i);
+                }
+                progress.update(i, all.size());
+                Routine routine = all.get(i);
+                if (format == Format.CSV) {
+                    for (Exercise exercise : routine.getExercises()) {
+                        writeCsvField(writer, routine.getName());
+                        writer.write(',');
+                        writeCsvField(writer, exercise.getName());
+                        writer.write("," + exercise.getWeight() + "," + exercise.getReps() + ","
+                                + exercise.getSets() + "\n");
+                    }
+                    if (routine.getExercises().isEmpty()) {
+                        writeCsvField(writer, routine.getName());
+                        writer.write(",,,,\n");
+                    }
+                } else {
+                    writer.write("{\"name\":");
+                    writeJsonString(writer, routine.getName());
+                    writer.write(",\"exercises\":[");
+                    List<Exercise> exercises = routine.getExercises();
+                    for (int j = 0; j < exercises.size(); j++) {
+                        Exercise exercise = exercises.get(j);
+                        writer.write(j == 0 ? "{\"name\":" : ",{\"name\":");
+                        writeJsonString(writer, exercise.getName());
+                        writer.write(",\"weight\":" + exercise.getWeight() + ",\"reps\":" + exercise.getReps()
+                                + ",\"sets\":" + exercise.getSets() + "}");
+                    }
+                    writer.write(i + 1 < all.size() ? "]},\n" : "]}\n");
+                }
+            }
+            if (format == Format.JSON) {
+                writer.write("]\n");
+            }
+            progress.update(all.size(), all.size());
+            return new Result(all.size(), 0, 0, false);
+        });
+    }
+
+    private interface WriteBody {
+        Result write(Writer writer) throws IOException;
+    }
+
+    private static Result writeAtomically(Path file, WriteBody body) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Result result;
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            result = body.write(writer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (result.isCancelled()) {
+            Files.deleteIfExists(temp);
+        } else {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return result;
+    }
+
+    // History import
+
+    // The import runs as one task on the persistence writer, the only thread
+    // that writes the history, so workouts logged meanwhile queue behind it
+    public Result importHistory(Path file, Progress progress, BooleanSupplier cancelled) throws IOException {
+        Result[] result = new Result[1];
+        PersistenceService.await(writer.submit(null, () -> result[0] = writeHistory(file, progress, cancelled)));
+        return result[0];
+    }
+
+    private Result writeHistory(Path file, Progress progress, BooleanSupplier cancelled) throws IOException {
+        long total = Files.size(file);
+        // contains() only sees records in time order, e.g. after a failed import
+        if (!history.isSorted()) {
+            history.sortByTime();
+        }
+        // Ten bits per workout keeps false positives near 1%; imported workouts
+        // are added as they go in, estimated at one per 32 bytes of the file
+        BloomFilter existing = new BloomFilter(history.size() + total / 32);
+        for (int i = 0; i < history.size(); i++) {
+            HistoryRecord record = history.get(i);
+            existing.add(key(record.getTimestamp(), record.getRoutineName()));
+        }
+
+        HistoryImport target = new HistoryImport(existing);
+        int maxInFlight = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ForkJoinTask<Row[]>> inFlight = new ArrayDeque<>();
+        boolean wasCancelled = false;
+        try (CountingInputStream counting = new CountingInputStream(Files.newInputStream(file));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8))) {
+            RecordSource source = RecordSource.open(Format.of(file), reader);
+            List<String> chunk = new ArrayList<>(CHUNK_ROWS);
+            String raw;
+            while (true) {
+                raw = source.next();
+                if (raw != null) {
+                    chunk.add(raw);
+                }
+                if (chunk.size() == CHUNK_ROWS || (raw == null && !chunk.isEmpty())) {
+                    List<String> rows = chunk;
+                    inFlight.add(pool.submit(() -> parseChunk(source, rows)));
+                    chunk = new ArrayList<>(CHUNK_ROWS);
+                }
+                // Keeps the reader a few chunks ahead of the writer and no further
+                while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || raw == null)) {
+                    target.apply(inFlight.poll().join());
+                    progress.update(counting.getCount(), total);
+                    if (cancelled.getAsBoolean()) {
+                        wasCancelled = true;
+                        break;
+                    }
+                }
+                if (raw == null || wasCancelled) {
+                    break;
+                }
+            }
+            for (ForkJoinTask<Row[]> task : inFlight) {
+                task.cancel(false);
+            }
+            target.finish();
+        } finally {
+            history.flush();
+        }
+        // Older workouts were appended after newer ones; put them in place.
+        // Not reached when the import failed, so a broken file costs no sort.
+        history.sortByTime();
+        progress.update(total, total);
+        return new Result(target.imported, target.duplicates, target.malformed, wasCancelled);
+    }
+
+    private static long key(long timestamp, String routineName) {
+        return timestamp * 31 + routineName.hashCode();
+    }
+
+    private static Row[] parseChunk(RecordSource source, List<String> raws) {
+        return PARSE_TIMER.time(() -> {
+            Row[] rows = new Row[raws.size()];
+            for (int i = 0; i < rows.length; i++) {
+                try {
+                    rows[i] = source.parseRow(raws.get(i));
+                } catch (RuntimeException e) {
+                    rows[i] = null; // malformed, counted when applied
+                }
+            }
+            return rows;
+        });
+    }
+
+    // Applies parsed rows in file order, folding per-set rows into workouts
+    private class HistoryImport {
+        private final BloomFilter existing;
+        // Exact keys of the workouts added since the history was last sorted,
+        // which its day index may not find yet. Checked when the filter hits, so
+        // a workout repeated further down the file is not added twice.
+        private final Set<String> added = new HashSet<>();
+        private int imported;
+        private int duplicates;
+        private int malformed;
+        private Row pending; // workout being folded from consecutive per-set rows
+        private final Set<String> pendingExercises = new HashSet<>();
+
+        HistoryImport(BloomFilter existing) {
+            this.existing = existing;
+        }
+
+        void apply(Row[] rows) throws IOException {
+            for (Row row : rows) {
+                if (row == null) {
+                    malformed++;
+                } else if (row.exerciseName == null || row.exercises >= 0) {
+                    finish();
+                    add(row.timestamp, row.routine, row.duration, Math.max(row.exercises, 0));
+                } else if (pending != null && pending.timestamp == row.timestamp
+                        && pending.routine.equals(row.routine)) {
+                    pendingExercises.add(row.exerciseName);
+                    pending.duration = Math.max(pending.duration, row.duration);
+                } else {
+                    finish();
+                    pending = row;
+                    pendingExercises.add(row.exerciseName);
+                }
+            }
+            // Sorting puts the added workouts where contains() finds them, so
+            // their keys can go and the set stays bounded however long the file
+            if (added.size() >= IMPORT_KEYS_PER_SORT) {
+                history.sortByTime();
+                added.clear();
+            }
+        }
+
+        void finish() throws IOException {
+            if (pending != null) {
+                add(pending.timestamp, pending.routine, pending.duration, pendingExercises.size());
+                pending = null;
+                pendingExercises.clear();
+            }
+        }
+
+        private void add(long timestamp, String routine, int duration, int exercises) throws IOException {
+            long key = key(timestamp, routine);
+            String exactKey = timestamp + "|" + routine;
+            if (existing.mightContain(key) && (added.contains(exactKey) || history.contains(timestamp, routine))) {
+                duplicates++;
+                return;
+            }
+            history.appendUnforced(routine, timestamp, Math.max(duration, 0), exercises);
+            existing.add(key);
+            added.add(exactKey);
+            imported++;
+        }
+    }
+
+    // Routine import
+
+    // Routines whose name is already taken are skipped. The new ones are
+    // merged into the repository at the end, journaled in a single write.
+    public Result importRoutines(Path file, Progress progress, BooleanSupplier cancelled) throws IOException {
+        long total = Files.size(file);
+        LinkedHashMap<String, Routine> imported = new LinkedHashMap<>();
+        Set<String> skipped = new HashSet<>();
+        int malformed = 0;
+        int rows = 0;
+        try (CountingInputStream counting = new CountingInputStream(Files.newInputStream(file));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8))) {
+            RecordSource source = RecordSource.open(Format.of(file), reader);
+            String raw;
+            while ((raw = source.next()) != null) {
+                if (++rows % CHUNK_ROWS == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return Result.cancelled(0);
+                    }
+                    progress.update(counting.getCount(), total);
+                }
+                List<Routine> parsed;
+                try {
+                    parsed = source.parseRoutines(raw);
+                } catch (RuntimeException e) {
+                    malformed++;
+                    continue;
+                }
+                for (Routine routine : parsed) {
+                    String name = routine.getName();
+                    if (routines.findByName(name) != null) {
+                        skipped.add(name);
+                        continue;
+                    }
+                    Routine into = imported.get(name);
+                    if (into == null) {
+                        imported.put(name, routine);
+                    } else {
+                        into.getExercises().addAll(routine.getExercises());
+                    }
+                }
+            }
+        }
+        if (cancelled.getAsBoolean()) {
+            return Result.cancelled(0);
+        }
+        int added = 0;
+        if (!imported.isEmpty()) {
+            // Names taken on the EDT since they were checked are skipped too
+            added = PersistenceService.await(routines.merge(imported.values())).size();
+        }
+        progress.update(total, total);
+        return new Result(added, skipped.size() + imported.size() - added, malformed, false);
+    }
+
+    // Parsing
+
+    // One parsed history row; exercises is -1 when the file has no count
+    private static class Row {
+        long timestamp;
+        String routine;
+        int duration;
+        int exercises = -1;
+        String exerciseName;
+    }
+
+    // Splits a file into raw records (a CSV row or a JSON object) and parses
+    // them; parsing is thread-safe so chunks can be parsed in parallel
+    private abstract static class RecordSource {
+        static RecordSource open(Format format, BufferedReader reader) throws IOException {
+            return format == Format.CSV ? new CsvSource(reader) : new JsonSource(reader);
+        }
+
+        abstract String next() throws IOException;
+
+        abstract Row parseRow(String raw);
+
+        abstract List<Routine> parseRoutines(String raw);
+    }
+
+    private static class CsvSource extends RecordSource {
+        private final BufferedReader reader;
+        private final int[] columns; // role of each column, or -1
+        private final int[] roleColumns = { -1, -1, -1, -1, -1, -1, -1, -1 };
+
+        CsvSource(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            String header = next();
+            if (header == null) {
+                throw new IOException("The file is empty");
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            List<String> names = splitCsv(header);
+            columns = new int[names.size()];
+            for (int i = 0; i < columns.length; i++) {
+                String name = names.get(i).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+                columns[i] = COLUMNS.getOrDefault(name, -1);
+                if (columns[i] >= 0 && roleColumns[columns[i]] < 0) {
+                    roleColumns[columns[i]] = i;
+                }
+            }
+        }
+
+        // A row, joined with the following lines while a quoted field is open
+        @Override
+        String next() throws IOException {
+            String line = reader.readLine();
+            while (line != null && line.isEmpty()) {
+                line = reader.readLine();
+            }
+            if (line == null) {
+                return null;
+            }
+            while (countQuotes(line) % 2 != 0) {
+                String more = reader.readLine();
+                if (more == null) {
+                    break;
+                }
+                line = line + "\n" + more;
+            }
+            return line;
+        }
+
+        private static int countQuotes(String line) {
+            int count = 0;
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == '"') {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private String field(List<String> fields, int role) {
+            int column = roleColumns[role];
+            if (column < 0 || column >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(column).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        @Override
+        Row parseRow(String raw) {
+            List<String> fields = splitCsv(raw);
+            Row row = new Row();
+            row.timestamp = parseTimestamp(require(field(fields, DATE), "date"));
+            row.routine = require(field(fields, ROUTINE), "workout name");
+            String duration = field(fields, DURATION);
+            row.duration = duration == null ? 0 : parseDuration(duration);
+            String exercises = field(fields, EXERCISES);
+            row.exercises = exercises == null ? -1 : (int) Double.parseDouble(exercises);
+            row.exerciseName = field(fields, EXERCISE_NAME);
+            return row;
+        }
+
+        @Override
+        List<Routine> parseRoutines(String raw) {
+            List<String> fields = splitCsv(raw);
+            Routine routine = new Routine(require(field(fields, ROUTINE), "routine"));
+            String exercise = field(fields, EXERCISE_NAME);
+            if (exercise != null) {
+                routine.addExercise(new Exercise(exercise, parseNumber(field(fields, WEIGHT)),
+                        (int) parseNumber(field(fields, REPS)), (int) parseNumber(field(fields, SETS))));
+            }
+            return List.of(routine);
+        }
+    }
+
+    private static class JsonSource extends RecordSource {
+        private final Reader reader;
+        private boolean inArray;
+
+        JsonSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        // The text of the next top-level object, read without parsing it
+        @Override
+        String next() throws IOException {
+            int c;
+            while ((c = reader.read()) != -1 && c != '{') {
+                if (c == '[') {
+                    inArray = true;
+                } else if (c == ']' && inArray) {
+                    return null;
+                }
+            }
+            if (c == -1) {
+                return null;
+            }
+            StringBuilder text = new StringBuilder("{");
+            int depth = 1;
+            boolean inString = false;
+            while (depth > 0 && (c = reader.read()) != -1) {
+                text.append((char) c);
+                if (inString) {
+                    if (c == '\\') {
+                        int escaped = reader.read();
+                        if (escaped != -1) {
+                            text.append((char) escaped);
+                        }
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+            return text.toString();
+        }
+
+        @Override
+        Row parseRow(String raw) {
+            Map<Integer, Object> fields = byRole(Json.parseObject(raw));
+            Row row = new Row();
+            Object date = require(fields.get(DATE), "date");
+            row.timestamp = parseTimestamp(date instanceof Number ? String.valueOf(((Number) date).longValue())
+                    : date.toString());
+            row.routine = require(fields.get(ROUTINE), "workout name").toString();
+            Object duration = fields.get(DURATION);
+            row.duration = duration == null ? 0
+                    : duration instanceof Number ? ((Number) duration).intValue() : parseDuration(duration.toString());
+            Object exercises = fields.get(EXERCISES);
+            if (exercises instanceof Number) {
+                row.exercises = ((Number) exercises).intValue();
+            } else if (exercises instanceof List) {
+                row.exercises = ((List<?>) exercises).size();
+            }
+            Object exerciseName = fields.get(EXERCISE_NAME);
+            row.exerciseName = exerciseName == null ? null : exerciseName.toString();
+            return row;
+        }
+
+        @Override
+        List<Routine> parseRoutines(String raw) {
+            Map<String, Object> object = Json.parseObject(raw);
+            Object name = object.containsKey("name") ? object.get("name") : byRole(object).get(ROUTINE);
+            Routine routine = new Routine(require(name, "routine name").toString());
+            Object exercises = object.get("exercises");
+            if (exercises instanceof List) {
+                for (Object item : (List<?>) exercises) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> exercise = (Map<String, Object>) item;
+                    routine.addExercise(new Exercise(require(exercise.get("name"), "exercise name").toString(),
+                            number(exercise.get("weight")), (int) number(exercise.get("reps")),
+                            (int) number(exercise.get("sets"))));
+                }
+            }
+            return List.of(routine);
+        }
+
+        private static Map<Integer, Object> byRole(Map<String, Object> object) {
+            Map<Integer, Object> fields = new HashMap<>();
+            for (Map.Entry<String, Object> entry : object.entrySet()) {
+                Integer role = COLUMNS.get(entry.getKey().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", ""));
+                if (role != null && entry.getValue() != null) {
+                    fields.putIfAbsent(role, entry.getValue());
+                }
+            }
+            return fields;
+        }
+
+        private static double number(Object value) {
+            return value instanceof Number ? ((Number) value).doubleValue()
+                    : parseNumber(value == null ? null : value.toString());
+        }
+    }
+
+    private static <T> T require(T value, String what) {
+        if (value == null) {
+            throw new IllegalArgumentException("missing " + what);
+        }
+        return value;
+    }
+
+    private static double parseNumber(String text) {
+        return text == null || text.isBlank() ? 0 : Double.parseDouble(text.trim());
+    }
+
+    // Dates as this app writes them, ISO 8601 with or without an offset, a
+    // plain date, or epoch seconds or milliseconds; picked by shape rather
+    // than by trying formats, since a failed parse costs an exception
+    static long parseTimestamp(String text) {
+        text = text.trim();
+        if (!text.isEmpty() && text.chars().allMatch(Character::isDigit)) {
+            long value = Long.parseLong(text);
+            return value > 100_000_000_000L ? value / 1000 : value;
+        }
+        try {
+            if (text.indexOf('T') > 0) {
+                char last = text.charAt(text.length() - 1);
+                if (last == 'Z' || text.lastIndexOf('+') > 10 || text.lastIndexOf('-') > 10) {
+                    return OffsetDateTime.parse(text).toEpochSecond();
+                }
+                return HistoryRecord.toTimestamp(LocalDateTime.parse(text));
+            }
+            return switch (text.length()) {
+                case 10 -> HistoryRecord.toTimestamp(LocalDate.parse(text).atStartOfDay());
+                case 16 -> HistoryRecord.toTimestamp(LocalDateTime.parse(text, DATE_TIME_MINUTES));
+                default -> HistoryRecord.toTimestamp(LocalDateTime.parse(text, DATE_TIME));
+            };
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("unreadable date: " + text, e);
+        }
+    }
+
+    // Seconds, h:mm:ss, mm:ss, or units such as "1h 5m" or "45min"
+    static int parseDuration(String text) {
+        text = text.trim().toLowerCase(Locale.ROOT);
+        if (text.indexOf(':') >= 0) {
+            int seconds = 0;
+            for (String part : text.split(":")) {
+                seconds = seconds * 60 + Integer.parseInt(part.trim());
+            }
+            return seconds;
+        }
+        if (text.chars().allMatch(c -> Character.isDigit(c) || c == '.')) {
+            return (int) Double.parseDouble(text);
+        }
+        int seconds = 0;
+        int number = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                number = (number < 0 ? 0 : number * 10) + (c - '0');
+            } else if (Character.isLetter(c) && number >= 0) {
+                seconds += number * (c == 'h' ? 3600 : c == 'm' ? 60 : 1);
+                number = -1;
+            }
+        }
+        if (number >= 0) {
+            seconds += number; // trailing number without a unit
+        }
+        return seconds;
+    }
+
+    // Splits one CSV row (RFC 4180 quoting)
+    static List<String> splitCsv(String row) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            writer.write(value);
+        } else {
+            writer.write('"' + value.replace("\"", "\"\"") + '"');
+        }
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                }
+            }
+        }
+        writer.write('"');
+    }
+
+    // Minimal JSON parser for one record: objects, arrays, strings, numbers,
+    // booleans and null
+    private static class Json {
+        private final String text;
+        private int position;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        @SuppressWarnings("unchecked")
+        static Map<String, Object> parseObject(String text) {
+            Object value = new Json(text).value();
+            if (!(value instanceof Map)) {
+                throw new IllegalArgumentException("expected an object");
+            }
+            return (Map<String, Object>) value;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            char c = peek();
+            switch (c) {
+                case '{' -> {
+                    position++;
+                    Map<String, Object> object = new LinkedHashMap<>();
+                    skipWhitespace();
+                    if (peek() == '}') {
+                        position++;
+                        return object;
+                    }
+                    while (true) {
+                        skipWhitespace();
+                        String key = string();
+                        skipWhitespace();
+                        expect(':');
+                        object.put(key, value());
+                        skipWhitespace();
+                        if (peek() == ',') {
+                            position++;
+                        } else {
+                            expect('}');
+                            return object;
+                        }
+                    }
+                }
+                case '[' -> {
+                    position++;
+                    List<Object> array = new ArrayList<>();
+                    skipWhitespace();
+                    if (peek() == ']') {
+                        position++;
+                        return array;
+                    }
+                    while (true) {
+                        array.add(value());
+                        skipWhitespace();
+                        if (peek() == ',') {
+                            position++;
+                        } else {
+                            expect(']');
+                            return array;
+                        }
+                    }
+                }
+                case '"' -> {
+                    return string();
+                }
+                default -> {
+                    int start = position;
+                    while (position < text.length() && ",}] \t\r\n".indexOf(text.charAt(position)) < 0) {
+                        position++;
+                    }
+                    String word = text.substring(start, position);
+                    return switch (word) {
+                        case "true" -> Boolean.TRUE;
+                        case "false" -> Boolean.FALSE;
+                        case "null" -> null;
+                        default -> Double.valueOf(word);
+                    };
+                }
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' -> {
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+        }
+
+        private char peek() {
+            if (position >= text.length()) {
+                throw new IllegalArgumentException("unexpected end of record");
+            }
+            return text.charAt(position);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("expected '" + c + "' at " + position);
+            }
+            position++;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    // Outcome of one import or export
+    public static class Result {
+        private final int transferred;
+        private final int duplicates;
+        private final int malformed;
+        private final boolean cancelled;
+
+        Result(int transferred, int duplicates, int malformed, boolean cancelled) {
+            this.transferred = transferred;
+            this.duplicates = duplicates;
+            this.malformed = malformed;
+            this.cancelled = cancelled;
+        }
+
+        static Result cancelled(int transferred) {
+            return new Result(transferred, 0, 0, true);
+        }
+
+        public int getTransferred() {
+            return transferred;
+        }
+
+        // Records skipped because they were already present
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        // Rows that could not be read
+        public int getMalformed() {
+            return malformed;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -7,11 +7,15 @@ public class Exercise {
     private int completedSets = 0;
 
     public Exercise(String name, double weight, int reps, int sets) {
+        this(name, weight, reps, sets, 0);
+    }
+
+    public Exercise(String name, double weight, int reps, int sets, int completedSets) {
         this.name = name;
         this.weight = weight;
         this.reps = reps;
         this.sets = sets;
-        this.completedSets = 0;
+        this.completedSets = completedSets;
     }
 
     // getters
@@ -46,16 +50,11 @@ public class Exercise {
 
     @Override
     public String toString() {
-        return String.format("%s||%.2f||%d||%d||%d", name, weight, reps, sets, completedSets);
+        return RoutineWriter.toText(this);
     }
 
     // Static method to create Exercise from string
     public static Exercise fromString(String str) {
-        String[] parts = str.split("\\|\\|");
-        return new Exercise(
-                parts[0],
-                Double.parseDouble(parts[1]),
-                Integer.parseInt(parts[2]),
-                Integer.parseInt(parts[3]));
+        return RoutineReader.parseExercise(str);
     }
 }
@@ -0,0 +1,298 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Headless entry point for scripting and servers without a display. Only uses
+// the core classes, so it never loads AWT or Swing and starts in milliseconds.
+//
+//   java -cp bin FitTrackCli stats [--from yyyy-mm-dd] [--to yyyy-mm-dd]
+//   java -cp bin FitTrackCli export history|routines <file.csv|file.json>
+//   java -cp bin FitTrackCli import history|routines <file.csv|file.json>
+//   java -cp bin FitTrackCli compact
+//   java -cp bin FitTrackCli validate
+//   java -cp bin FitTrackCli members [add <name>]
+//
+// Commands work on the default member's data unless the command line starts
+// with --member <id>.
+//
+// Exit status is 0 on success, 1 when validation finds problems or a command
+// fails, and 2 for usage errors.
+public class FitTrackCli {
+    private static final int TOP_ROUTINES = 10;
+
+    public static void main(String[] args) {
+        int status;
+        try {
+            status = run(args);
+        } catch (UsageException e) {
+            System.err.println("Error: " + e.getMessage());
+            printUsage();
+            status = 2;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error: " + e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    static int run(String[] args) throws IOException {
+        String member = ProfileStore.DEFAULT_ID;
+        if (args.length > 0 && args[0].equals("--member")) {
+            if (args.length < 2) {
+                throw new UsageException("--member needs a member id");
+            }
+            member = args[1];
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length == 0 || args[0].equals("help") || args[0].equals("--help")) {
+            printUsage();
+            return 0;
+        }
+        if (args[0].equals("members")) {
+            return members(args);
+        }
+        Profile profile = ProfileStore.getInstance().get(member);
+        switch (args[0]) {
+            case "stats":
+                return stats(profile, args);
+            case "export":
+            case "import":
+                return transfer(profile, args);
+            case "compact":
+                return compact(profile);
+            case "validate":
+                return validate(profile);
+            default:
+                throw new UsageException("Unknown command: " + args[0]);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: FitTrackCli [--member <id>] <command>");
+        System.out.println("  stats [--from yyyy-mm-dd] [--to yyyy-mm-dd]  workouts in a date range and personal records");
+        System.out.println("  export history|routines <file>               write a .csv or .json file");
+        System.out.println("  import history|routines <file>               read a .csv or .json file, skipping duplicates");
+        System.out.println("  compact                                      fold the routine journal, re-sort history");
+        System.out.println("  validate                                     check routines, history and session logs");
+        System.out.println("  members [add <name>]                         list the members or add one");
+    }
+
+    // Workout count, time and most logged routines in the range (both ends
+    // inclusive), found through the history's day index, then all-time records
+    private static int stats(Profile profile, String[] args) throws IOException {
+        LocalDate from = null;
+        LocalDate to = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--from" -> from = parseDate(args, ++i);
+                case "--to" -> to = parseDate(args, ++i);
+                default -> throw new UsageException("Unknown option: " + args[i]);
+            }
+        }
+
+        HistoryStore history = profile.getHistory();
+        int start = from == null ? 0 : history.indexOf(HistoryRecord.toTimestamp(from.atStartOfDay()));
+        int end = to == null ? history.size()
+                : history.indexOf(HistoryRecord.toTimestamp(to.plusDays(1).atStartOfDay()));
+        end = Math.max(start, end);
+        long seconds = history.totalDurationSeconds(start, end);
+        Map<String, Integer> byRoutine = new HashMap<>();
+        for (int i = start; i < end; i++) {
+            byRoutine.merge(history.get(i).getRoutineName(), 1, Integer::sum);
+        }
+
+        System.out.println("Workouts: " + (end - start) + (from == null && to == null ? " (all time)"
+                : " (" + (from == null ? "start" : from) + " to " + (to == null ? "today" : to) + ")"));
+        System.out.println("Total time: " + HistoryRecord.formatDuration((int) seconds));
+        if (end > start) {
+            System.out.println("Average: " + HistoryRecord.formatDuration((int) (seconds / (end - start))));
+        }
+        List<Map.Entry<String, Integer>> routines = new ArrayList<>(byRoutine.entrySet());
+        routines.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        for (int i = 0; i < Math.min(TOP_ROUTINES, routines.size()); i++) {
+            System.out.printf(Locale.ROOT, "  %6d  %s%n", routines.get(i).getValue(), routines.get(i).getKey());
+        }
+
+        AnalyticsReport report = profile.getAnalytics().compute(() -> false);
+        if (!report.getPersonalRecords().isEmpty()) {
+            System.out.println("Personal records (" + report.getSessionCount() + " logged sessions):");
+            List<String> exercises = new ArrayList<>(report.getPersonalRecords().keySet());
+            exercises.sort(String.CASE_INSENSITIVE_ORDER);
+            for (String exercise : exercises) {
+                AnalyticsReport.PersonalRecord record = report.getPersonalRecord(exercise);
+                System.out.printf(Locale.ROOT, "  %-24s %7.2f x %-3d on %s, est. 1RM %7.2f%n", exercise,
+                        record.getHeaviestWeight(), record.getHeaviestReps(), date(record.getHeaviestMillis()),
+                        record.getBestOneRepMax());
+            }
+        }
+        return 0;
+    }
+
+    private static LocalDate parseDate(String[] args, int index) {
+        if (index >= args.length) {
+            throw new UsageException(args[index - 1] + " needs a date");
+        }
+        try {
+            return LocalDate.parse(args[index]);
+        } catch (DateTimeParseException e) {
+            throw new UsageException("Not a yyyy-mm-dd date: " + args[index]);
+        }
+    }
+
+    private static LocalDate date(long millis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static int transfer(Profile profile, String[] args) throws IOException {
+        if (args.length != 3 || !(args[1].equals("history") || args[1].equals("routines"))) {
+            throw new UsageException(args[0] + " needs history|routines and a file");
+        }
+        boolean history = args[1].equals("history");
+        Path file = Paths.get(args[2]);
+        DataTransfer transfer = profile.getTransfer();
+        DataTransfer.Progress progress = progressPrinter();
+        DataTransfer.Result result;
+        if (args[0].equals("export")) {
+            result = history ? transfer.exportHistory(file, progress, () -> false)
+                    : transfer.exportRoutines(file, progress, () -> false);
+            System.out.println("Exported " + result.getTransferred() + " " + args[1] + " records to " + file);
+        } else {
+            if (!Files.exists(file)) {
+                throw new IOException("No such file: " + file);
+            }
+            result = history ? transfer.importHistory(file, progress, () -> false)
+                    : transfer.importRoutines(file, progress, () -> false);
+            System.out.println("Imported " + result.getTransferred() + ", skipped " + result.getDuplicates()
+                    + " already present, " + result.getMalformed() + " unreadable");
+        }
+        return 0;
+    }
+
+    // Percentages on stderr when attached to a terminal, nothing when scripted
+    private static DataTransfer.Progress progressPrinter() {
+        if (System.console() == null) {
+            return (done, total) -> {
+            };
+        }
+        int[] shown = { -1 };
+        return (done, total) -> {
+            int percent = total <= 0 ? 100 : (int) (done * 100 / total);
+            if (percent != shown[0]) {
+                shown[0] = percent;
+                System.err.print("\r" + percent + "%" + (percent == 100 ? "\n" : ""));
+            }
+        };
+    }
+
+    private static int compact(Profile profile) throws IOException {
+        RoutineJournal journal = new RoutineJournal(profile.getRoutinesPath(), profile.getRoutinesJournalPath());
+        int routines = journal.load().size();
+        journal.compact();
+        System.out.println("Compacted " + routines + " routines into " + profile.getRoutinesPath());
+
+        HistoryStore history = profile.getHistory();
+        if (history.isSorted()) {
+            System.out.println("History is in time order (" + history.size() + " workouts)");
+        } else {
+            history.sortByTime();
+            System.out.println("Re-sorted " + history.size() + " workouts by time");
+        }
+        return 0;
+    }
+
+    // Read-only checks; prints each problem and returns 1 if there were any
+    private static int validate(Profile profile) throws IOException {
+        List<String> problems = new ArrayList<>();
+
+        Path snapshot = Paths.get(profile.getRoutinesPath());
+        if (Files.exists(snapshot)) {
+            try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+                RoutineReader routineReader = new RoutineReader(reader, snapshot.getFileName().toString());
+                List<Routine> routines = routineReader.readRoutines();
+                problems.addAll(routineReader.getProblems());
+                Set<String> names = new HashSet<>();
+                for (Routine routine : routines) {
+                    if (!names.add(routine.getName())) {
+                        problems.add("routines.txt: duplicate routine name '" + routine.getName() + "'");
+                    }
+                }
+                System.out.println("Routines: " + routines.size() + " in the snapshot");
+            }
+        }
+
+        try {
+            HistoryStore history = profile.getHistory();
+            System.out.println("History: " + history.size() + " workouts");
+            if (!history.isSorted()) {
+                problems.add("history: workouts are out of time order (run compact)");
+            }
+        } catch (IOException | RuntimeException e) {
+            problems.add("history: " + e.getMessage());
+        }
+
+        int sessions = 0;
+        int unfinished = 0;
+        Path sessionsDir = Paths.get(profile.getSessionsDir());
+        if (Files.isDirectory(sessionsDir)) {
+            try (DirectoryStream<Path> logs = Files.newDirectoryStream(sessionsDir, "session-*.log")) {
+                for (Path log : logs) {
+                    sessions++;
+                    try {
+                        if (!SessionLog.read(log).isFinished()) {
+                            unfinished++;
+                        }
+                    } catch (IOException e) {
+                        problems.add(log.getFileName() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        System.out.println("Session logs: " + sessions + (unfinished > 0 ? " (" + unfinished + " unfinished)" : ""));
+
+        for (String problem : problems) {
+            System.out.println("Problem: " + problem);
+        }
+        System.out.println(problems.isEmpty() ? "OK" : problems.size() + " problems found");
+        return problems.isEmpty() ? 0 : 1;
+    }
+
+    // Lists every member, or adds one and prints the id to use with --member
+    private static int members(String[] args) throws IOException {
+        ProfileStore store = ProfileStore.getInstance();
+        if (args.length == 1) {
+            for (ProfileStore.Member member : store.getMembers()) {
+                System.out.printf(Locale.ROOT, "  %-32s %s%n", member.getId(), member.getName());
+            }
+            return 0;
+        }
+        if (args.length < 3 || !args[1].equals("add")) {
+            throw new UsageException("members takes no arguments, or add <name>");
+        }
+        String name = String.join(" ", Arrays.copyOfRange(args, 2, args.length));
+        ProfileStore.Member member = PersistenceService.await(store.addMember(name));
+        System.out.println("Added " + member.getName() + " as " + member.getId());
+        return 0;
+    }
+
+    private static class UsageException extends RuntimeException {
+        UsageException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// One finished workout session as stored in the history segments
+public class HistoryRecord {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final long timestamp; // epoch seconds
+    private final int durationSeconds;
+    private final int routineId;
+    private final String routineName;
+    private final int exerciseCount;
+
+    public HistoryRecord(long timestamp, int durationSeconds, int routineId, String routineName, int exerciseCount) {
+        this.timestamp = timestamp;
+        this.durationSeconds = durationSeconds;
+        this.routineId = routineId;
+        this.routineName = routineName;
+        this.exerciseCount = exerciseCount;
+    }
+
+    // getters
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getRoutineId() {
+        return routineId;
+    }
+
+    public String getRoutineName() {
+        return routineName;
+    }
+
+    public int getExerciseCount() {
+        return exerciseCount;
+    }
+
+    public LocalDateTime getDateTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(timestamp), ZoneId.systemDefault());
+    }
+
+    public String getFormattedDate() {
+        return getDateTime().format(DATE_FORMAT);
+    }
+
+    public String getFormattedDuration() {
+        return formatDuration(durationSeconds);
+    }
+
+    public static String formatDuration(int seconds) {
+        int hours = seconds / 3600;
+        int minutes = (seconds % 3600) / 60;
+        int secs = seconds % 60;
+        return String.format("%02d:%02d:%02d", hours, minutes, secs);
+    }
+
+    public static long toTimestamp(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    public static LocalDateTime parseDate(String text) {
+        return LocalDateTime.parse(text.trim(), DATE_FORMAT);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Workout: %s |Date:  %s | Duration: %s | Exercises: %d",
+                routineName, getFormattedDate(), getFormattedDuration(), exerciseCount);
+    }
+}
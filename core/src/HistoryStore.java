@@ -0,0 +1,637 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Binary workout history. Records live in fixed-size segment files, each laid
+// out column by column (timestamps, durations, routine ids, exercise counts),
+// and every segment is mapped into memory so reads and aggregations are plain
+// buffer scans. Routine names are kept once in a small dictionary file and
+// referenced by id.
+//
+// A sparse day index, one entry per calendar day that has workouts, maps the
+// day to its first record. Workouts are appended as they finish, so records
+// are in time order and a date range is a contiguous run of records found by
+// binary search over the index, without touching the records outside it.
+// Bulk imports of older workouts restore the order with sortByTime(), which
+// writes the re-sorted segments to new files and switches to them once all of
+// them are on disk. segments.list names the segment files in record order and
+// is only ever replaced whole, so it is the commit point; stores from before
+// the list simply number their segments from zero.
+public class HistoryStore {
+    static final int SEGMENT_MAGIC = 0x46544853; // "FTHS"
+    static final int SEGMENT_VERSION = 1;
+    static final int SEGMENT_CAPACITY = 8192;
+    static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 12;
+    private static final int TIMESTAMP_COLUMN = HEADER_SIZE;
+    private static final int DURATION_COLUMN = TIMESTAMP_COLUMN + SEGMENT_CAPACITY * Long.BYTES;
+    private static final int ROUTINE_COLUMN = DURATION_COLUMN + SEGMENT_CAPACITY * Integer.BYTES;
+    private static final int EXERCISE_COLUMN = ROUTINE_COLUMN + SEGMENT_CAPACITY * Integer.BYTES;
+    static final int SEGMENT_SIZE = EXERCISE_COLUMN + SEGMENT_CAPACITY * Integer.BYTES;
+    // Appends, clears and flushes, i.e. everything that forces a segment to disk
+    private static final Metrics.Timer WRITE_TIMER = Metrics.getInstance().timer("history.write");
+
+    private final Path historyDir;
+    private final Path dictionaryFile;
+    private final Path segmentListFile;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<String> segmentNames = new ArrayList<>();
+    private int nextSegmentNumber;
+    private final List<String> routineNames = new ArrayList<>();
+    private final HashMap<String, Integer> routineIds = new HashMap<>();
+    private int size;
+    private int generation; // bumped whenever existing records are discarded or reordered
+
+    // Day index: epoch day and first record index of each day, in record order
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long[] indexDays = new long[64];
+    private int[] indexStarts = new int[64];
+    private int indexSize;
+    private long indexedDayStart = Long.MAX_VALUE; // bounds of the last indexed day, in epoch seconds
+    private long indexedDayEnd = Long.MIN_VALUE;
+    private long latestTimestamp = Long.MIN_VALUE;
+    private boolean sorted = true; // false once a record was appended before an earlier one
+    private int unsortedFrom; // the first such record, when not sorted
+
+    public HistoryStore(String historyDir) throws IOException {
+        this.historyDir = Paths.get(historyDir);
+        this.dictionaryFile = this.historyDir.resolve("routines.dict");
+        this.segmentListFile = this.historyDir.resolve("segments.list");
+        Files.createDirectories(this.historyDir);
+        openDictionary();
+        openSegments();
+    }
+
+    private void openDictionary() throws IOException {
+        if (!Files.exists(dictionaryFile)) {
+            return;
+        }
+        for (String name : Files.readAllLines(dictionaryFile, StandardCharsets.UTF_8)) {
+            routineIds.put(name, routineNames.size());
+            routineNames.add(name);
+        }
+    }
+
+    private void openSegments() throws IOException {
+        if (Files.exists(segmentListFile)) {
+            segmentNames.addAll(Files.readAllLines(segmentListFile, StandardCharsets.UTF_8));
+            dropUnlistedSegments();
+        } else {
+            while (Files.exists(historyDir.resolve(segmentName(segmentNames.size())))) {
+                segmentNames.add(segmentName(segmentNames.size()));
+            }
+        }
+        for (String name : segmentNames) {
+            Path file = historyDir.resolve(name);
+            MappedByteBuffer segment = mapSegment(file);
+            if (segment.getInt(0) != SEGMENT_MAGIC || segment.getInt(4) != SEGMENT_VERSION) {
+                throw new IOException("Corrupt history segment: " + file);
+            }
+            segments.add(segment);
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(name) + 1);
+        }
+
+        // Segments fill up in order, so the size is every full segment plus
+        // whatever the first non-full one holds
+        size = 0;
+        for (MappedByteBuffer segment : segments) {
+            int count = segment.getInt(COUNT_OFFSET);
+            size += count;
+            if (count < SEGMENT_CAPACITY) {
+                break;
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            indexRecord(i, timestampAt(i));
+        }
+    }
+
+    private static String segmentName(int number) {
+        return String.format("segment-%05d.seg", number);
+    }
+
+    private static int segmentNumber(String name) {
+        return Integer.parseInt(name.substring("segment-".length(), name.length() - ".seg".length()));
+    }
+
+    // Segment files the list does not name were written by a sort that crashed
+    // before switching to them, or replaced by one while they were still
+    // mapped; neither holds records the store needs
+    private void dropUnlistedSegments() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(historyDir, "segment-*.seg")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                // New segments are numbered past any file left behind
+                nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(name) + 1);
+                if (!segmentNames.contains(name)) {
+                    deleteSegmentFile(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Could not list history segments: " + e.getMessage());
+        }
+    }
+
+    private static void deleteSegmentFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not delete old history segment " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Replaces segments.list through a synced temp file and an atomic rename
+    private void writeSegmentList(List<String> names) throws IOException {
+        Path tempFile = segmentListFile.resolveSibling(segmentListFile.getFileName() + ".tmp");
+        Files.write(tempFile, names, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempFile, segmentListFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private MappedByteBuffer mapSegment(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+    }
+
+    // Maps a new, empty segment and lists it before any record goes into it
+    private MappedByteBuffer createSegment() throws IOException {
+        String name = segmentName(nextSegmentNumber++);
+        MappedByteBuffer segment = mapSegment(historyDir.resolve(name));
+        segment.putInt(0, SEGMENT_MAGIC);
+        segment.putInt(4, SEGMENT_VERSION);
+        segment.putInt(8, SEGMENT_CAPACITY);
+        segment.putInt(COUNT_OFFSET, 0);
+        segment.force();
+        List<String> names = new ArrayList<>(segmentNames);
+        names.add(name);
+        writeSegmentList(names);
+        segments.add(segment);
+        segmentNames.add(name);
+        return segment;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    public synchronized HistoryRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("History record " + index + " of " + size);
+        }
+        MappedByteBuffer segment = segments.get(index / SEGMENT_CAPACITY);
+        int slot = index % SEGMENT_CAPACITY;
+        int routineId = segment.getInt(ROUTINE_COLUMN + slot * Integer.BYTES);
+        return new HistoryRecord(
+                segment.getLong(TIMESTAMP_COLUMN + slot * Long.BYTES),
+                segment.getInt(DURATION_COLUMN + slot * Integer.BYTES),
+                routineId,
+                getRoutineName(routineId),
+                segment.getInt(EXERCISE_COLUMN + slot * Integer.BYTES));
+    }
+
+    private long timestampAt(int index) {
+        return timestampAt(segments, index);
+    }
+
+    private static long timestampAt(List<MappedByteBuffer> view, int index) {
+        MappedByteBuffer segment = view.get(index / SEGMENT_CAPACITY);
+        return segment.getLong(TIMESTAMP_COLUMN + index % SEGMENT_CAPACITY * Long.BYTES);
+    }
+
+    // Adds an index entry when the record starts a new day. The day bounds are
+    // only recomputed on a day change, so indexing costs a compare per record.
+    private void indexRecord(int index, long timestamp) {
+        if (timestamp < latestTimestamp && sorted) {
+            sorted = false;
+            unsortedFrom = index;
+        }
+        latestTimestamp = Math.max(latestTimestamp, timestamp);
+        if (timestamp >= indexedDayStart && timestamp < indexedDayEnd) {
+            return;
+        }
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochSecond(timestamp), zone);
+        indexedDayStart = day.atStartOfDay(zone).toEpochSecond();
+        indexedDayEnd = day.plusDays(1).atStartOfDay(zone).toEpochSecond();
+        if (indexSize > 0 && day.toEpochDay() <= indexDays[indexSize - 1]) {
+            return; // out of order, e.g. the clock went back; stays in the later day's run
+        }
+        if (indexSize == indexDays.length) {
+            indexDays = Arrays.copyOf(indexDays, indexSize * 2);
+            indexStarts = Arrays.copyOf(indexStarts, indexSize * 2);
+        }
+        indexDays[indexSize] = day.toEpochDay();
+        indexStarts[indexSize] = index;
+        indexSize++;
+    }
+
+    // Index of the first record at or after the timestamp (epoch seconds), or
+    // size() when there is none. Binary searches the day index, then scans
+    // only within that day.
+    public synchronized int indexOf(long timestamp) {
+        long day = LocalDate.ofInstant(Instant.ofEpochSecond(timestamp), zone).toEpochDay();
+        int entry = Arrays.binarySearch(indexDays, 0, indexSize, day);
+        if (entry < 0) {
+            entry = -entry - 1;
+            return entry < indexSize ? indexStarts[entry] : size;
+        }
+        int end = entry + 1 < indexSize ? indexStarts[entry + 1] : size;
+        for (int i = indexStarts[entry]; i < end; i++) {
+            if (timestampAt(i) >= timestamp) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    // True when a record has exactly this timestamp and routine name
+    public synchronized boolean contains(long timestamp, String routineName) {
+        Integer routineId = routineIds.get(routineName);
+        if (routineId == null) {
+            return false;
+        }
+        for (int i = indexOf(timestamp); i < size && timestampAt(i) == timestamp; i++) {
+            MappedByteBuffer segment = segments.get(i / SEGMENT_CAPACITY);
+            if (segment.getInt(ROUTINE_COLUMN + i % SEGMENT_CAPACITY * Integer.BYTES) == routineId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // False after records were appended out of time order, e.g. by an import
+    // of older workouts; range lookups are only exact again after sortByTime()
+    public synchronized boolean isSorted() {
+        return sorted;
+    }
+
+    // Puts the records in time order and rebuilds the day index. Only the run
+    // from the first out-of-order record on is read into memory and sorted;
+    // it is then merged with the records it belongs among into new segment
+    // files, from the first segment that changes. Those are swapped in by
+    // rewriting the segment list once all of them are on disk, so a crash
+    // leaves either the old or the new order, never a mix. Files that are
+    // still mapped are never renamed over; the replaced ones are deleted.
+    //
+    // The rewrite reads the mapped records without holding the store's lock,
+    // so screens keep reading while it runs; the lock is only taken to look
+    // at the store and to swap the new segments in. Should records be added
+    // or cleared meanwhile, the new files are dropped and the sort starts over.
+    public void sortByTime() throws IOException {
+        while (true) {
+            List<MappedByteBuffer> view;
+            int runStart;
+            int count;
+            int startGeneration;
+            int firstNumber;
+            synchronized (this) {
+                if (sorted) {
+                    return;
+                }
+                view = new ArrayList<>(segments);
+                runStart = unsortedFrom;
+                count = size;
+                startGeneration = generation;
+                // Numbers for as many segments as the rewrite can produce
+                firstNumber = nextSegmentNumber;
+                nextSegmentNumber += (count + SEGMENT_CAPACITY - 1) / SEGMENT_CAPACITY;
+            }
+            List<String> written = new ArrayList<>();
+            int firstSegment = WRITE_TIMER.time(() -> writeSortedSegments(view, runStart, count, firstNumber, written));
+            if (swapInSortedSegments(firstSegment, written, startGeneration, count)) {
+                return;
+            }
+            for (String name : written) {
+                deleteSegmentFile(historyDir.resolve(name));
+            }
+        }
+    }
+
+    // Writes the records [0, count) of the segments in time order to new
+    // files, from the first segment whose records move. Returns that segment.
+    private int writeSortedSegments(List<MappedByteBuffer> view, int runStart, int count, int firstNumber,
+            List<String> written) throws IOException {
+        long[] runTimestamps = new long[count - runStart];
+        for (int i = 0; i < runTimestamps.length; i++) {
+            runTimestamps[i] = timestampAt(view, runStart + i);
+        }
+        int[] order = sortedOrder(runTimestamps);
+
+        // Records up to the first one later than the whole run stay in place
+        int firstMoved = firstAfter(view, runTimestamps[order[0]], runStart);
+        int firstSegment = firstMoved / SEGMENT_CAPACITY;
+        ByteBuffer out = ByteBuffer.allocate(SEGMENT_SIZE);
+        int inPlace = firstSegment * SEGMENT_CAPACITY;
+        int fromRun = 0;
+        for (int s = firstSegment; s * SEGMENT_CAPACITY < count; s++) {
+            int records = Math.min(SEGMENT_CAPACITY, count - s * SEGMENT_CAPACITY);
+            out.clear();
+            out.putInt(0, SEGMENT_MAGIC);
+            out.putInt(4, SEGMENT_VERSION);
+            out.putInt(8, SEGMENT_CAPACITY);
+            out.putInt(COUNT_OFFSET, records);
+            for (int slot = 0; slot < records; slot++) {
+                // Ties keep the earlier record first, so the merge is stable
+                boolean takeInPlace = fromRun == order.length || (inPlace < runStart
+                        && timestampAt(view, inPlace) <= runTimestamps[order[fromRun]]);
+                copyRecord(view, takeInPlace ? inPlace++ : runStart + order[fromRun++], out, slot);
+            }
+            String name = segmentName(firstNumber + s);
+            writeSortedSegment(historyDir.resolve(name), out);
+            written.add(name);
+        }
+        return firstSegment;
+    }
+
+    // Commits the sorted segments by listing them in place of the ones from
+    // firstSegment on, unless the store changed since the sort looked at it
+    private synchronized boolean swapInSortedSegments(int firstSegment, List<String> written, int startGeneration,
+            int count) throws IOException {
+        if (generation != startGeneration || size != count) {
+            return false;
+        }
+        List<String> names = new ArrayList<>(segmentNames.subList(0, firstSegment));
+        names.addAll(written);
+        writeSegmentList(names);
+
+        // Segments past the last record are empty and not carried over
+        List<String> replaced = new ArrayList<>(segmentNames.subList(firstSegment, segmentNames.size()));
+        segments.subList(firstSegment, segments.size()).clear();
+        segmentNames.subList(firstSegment, segmentNames.size()).clear();
+        for (String name : written) {
+            segments.add(mapSegment(historyDir.resolve(name)));
+            segmentNames.add(name);
+        }
+        // The old mappings go with their buffers; where a file cannot be deleted
+        // while mapped it is dropped on the next open instead
+        for (String name : replaced) {
+            deleteSegmentFile(historyDir.resolve(name));
+        }
+
+        // Records before the first rewritten segment kept their place, and so
+        // do their day index entries
+        int kept = firstSegment * SEGMENT_CAPACITY;
+        while (indexSize > 0 && indexStarts[indexSize - 1] >= kept) {
+            indexSize--;
+        }
+        indexedDayStart = Long.MAX_VALUE;
+        indexedDayEnd = Long.MIN_VALUE;
+        latestTimestamp = kept > 0 ? timestampAt(kept - 1) : Long.MIN_VALUE;
+        sorted = true;
+        for (int i = kept; i < size; i++) {
+            indexRecord(i, timestampAt(i));
+        }
+        generation++;
+        return true;
+    }
+
+    // Positions 0..n-1 ordered by timestamp, equal timestamps in position
+    // order. A bottom-up merge sort on int arrays, so sorting costs 16 bytes
+    // per record rather than a boxed index each.
+    private static int[] sortedOrder(long[] timestamps) {
+        int n = timestamps.length;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        int[] merged = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, n);
+                int a = lo;
+                int b = mid;
+                int o = lo;
+                while (a < mid && b < hi) {
+                    merged[o++] = timestamps[order[b]] < timestamps[order[a]] ? order[b++] : order[a++];
+                }
+                while (a < mid) {
+                    merged[o++] = order[a++];
+                }
+                while (b < hi) {
+                    merged[o++] = order[b++];
+                }
+                System.arraycopy(merged, lo, order, lo, hi - lo);
+            }
+        }
+        return order;
+    }
+
+    // First index in the sorted records [0, end) whose timestamp is after the given one
+    private static int firstAfter(List<MappedByteBuffer> view, long timestamp, int end) {
+        int lo = 0;
+        int hi = end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestampAt(view, mid) <= timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static void copyRecord(List<MappedByteBuffer> view, int index, ByteBuffer out, int slot) {
+        MappedByteBuffer segment = view.get(index / SEGMENT_CAPACITY);
+        int from = index % SEGMENT_CAPACITY;
+        out.putLong(TIMESTAMP_COLUMN + slot * Long.BYTES, segment.getLong(TIMESTAMP_COLUMN + from * Long.BYTES));
+        out.putInt(DURATION_COLUMN + slot * Integer.BYTES, segment.getInt(DURATION_COLUMN + from * Integer.BYTES));
+        out.putInt(ROUTINE_COLUMN + slot * Integer.BYTES, segment.getInt(ROUTINE_COLUMN + from * Integer.BYTES));
+        out.putInt(EXERCISE_COLUMN + slot * Integer.BYTES, segment.getInt(EXERCISE_COLUMN + from * Integer.BYTES));
+    }
+
+    private void writeSortedSegment(Path file, ByteBuffer out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void resetDayIndex() {
+        indexSize = 0;
+        indexedDayStart = Long.MAX_VALUE;
+        indexedDayEnd = Long.MIN_VALUE;
+        latestTimestamp = Long.MIN_VALUE;
+        sorted = true;
+    }
+
+    public synchronized String getRoutineName(int routineId) {
+        if (routineId < 0 || routineId >= routineNames.size()) {
+            return "Unknown";
+        }
+        return routineNames.get(routineId);
+    }
+
+    public synchronized void append(String routineName, long timestamp, int durationSeconds, int exerciseCount)
+            throws IOException {
+        WRITE_TIMER.time(() -> {
+            appendRecord(routineName, timestamp, durationSeconds, exerciseCount);
+            segments.get((size - 1) / SEGMENT_CAPACITY).force();
+        });
+    }
+
+    // Appends without forcing the segment to disk, for bulk writes that call flush() once at the end
+    public synchronized void appendUnforced(String routineName, long timestamp, int durationSeconds,
+            int exerciseCount) throws IOException {
+        appendRecord(routineName, timestamp, durationSeconds, exerciseCount);
+    }
+
+    public synchronized void flush() {
+        WRITE_TIMER.time(() -> {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        });
+    }
+
+    private void appendRecord(String routineName, long timestamp, int durationSeconds, int exerciseCount)
+            throws IOException {
+        int routineId = routineIdFor(routineName);
+        int segmentIndex = size / SEGMENT_CAPACITY;
+        MappedByteBuffer segment = segmentIndex < segments.size()
+                ? segments.get(segmentIndex)
+                : createSegment();
+        int slot = size % SEGMENT_CAPACITY;
+
+        segment.putLong(TIMESTAMP_COLUMN + slot * Long.BYTES, timestamp);
+        segment.putInt(DURATION_COLUMN + slot * Integer.BYTES, durationSeconds);
+        segment.putInt(ROUTINE_COLUMN + slot * Integer.BYTES, routineId);
+        segment.putInt(EXERCISE_COLUMN + slot * Integer.BYTES, exerciseCount);
+        indexRecord(size, timestamp);
+
+        // Bumping the count last commits the record
+        segment.putInt(COUNT_OFFSET, slot + 1);
+        size++;
+    }
+
+    private int routineIdFor(String routineName) throws IOException {
+        Integer id = routineIds.get(routineName);
+        if (id != null) {
+            return id;
+        }
+        Files.writeString(dictionaryFile, routineName + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        id = routineNames.size();
+        routineNames.add(routineName);
+        routineIds.put(routineName, id);
+        return id;
+    }
+
+    // Empties the history but keeps the segment files mapped for reuse, since a
+    // mapped file cannot be deleted or truncated on every platform
+    public synchronized void clear() {
+        WRITE_TIMER.time(() -> {
+            for (MappedByteBuffer segment : segments) {
+                segment.putInt(COUNT_OFFSET, 0);
+                segment.force();
+            }
+        });
+        size = 0;
+        generation++;
+        resetDayIndex();
+    }
+
+    public synchronized long totalDurationSeconds() {
+        return totalDurationSeconds(0, size);
+    }
+
+    // Total duration of the records in [from, to), e.g. a range from indexOf()
+    public synchronized long totalDurationSeconds(int from, int to) {
+        long total = 0;
+        to = Math.min(to, size);
+        for (int index = Math.max(from, 0); index < to;) {
+            MappedByteBuffer segment = segments.get(index / SEGMENT_CAPACITY);
+            int slot = index % SEGMENT_CAPACITY;
+            int end = Math.min(SEGMENT_CAPACITY, slot + (to - index));
+            for (int i = slot; i < end; i++) {
+                total += segment.getInt(DURATION_COLUMN + i * Integer.BYTES);
+            }
+            index += end - slot;
+        }
+        return total;
+    }
+
+    // One-time import of the old text log. The store is reset first so an
+    // import interrupted by a crash is simply redone on the next start.
+    // Returns the number of workouts imported.
+    public synchronized int migrateLegacyHistory(String legacyFile) throws IOException {
+        Path legacy = Paths.get(legacyFile);
+        if (!Files.exists(legacy)) {
+            return 0;
+        }
+
+        clear();
+        int imported = 0;
+        try (BufferedReader reader = Files.newBufferedReader(legacy, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (migrateLine(line)) {
+                    imported++;
+                }
+            }
+        }
+        flush();
+
+        Files.move(legacy, legacy.resolveSibling(legacy.getFileName() + ".migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
+        return imported;
+    }
+
+    // Old format: "Workout: <name> |Date:  <date> | Duration: <hh:mm:ss> | Exercises: <n>"
+    private boolean migrateLine(String line) throws IOException {
+        String[] parts = line.split("\\|");
+        if (parts.length < 4) {
+            return false;
+        }
+        try {
+            String name = stripLabel(parts[0], "Workout:");
+            long timestamp = HistoryRecord.toTimestamp(HistoryRecord.parseDate(stripLabel(parts[1], "Date:")));
+            String[] hms = stripLabel(parts[2], "Duration:").split(":");
+            int duration = Integer.parseInt(hms[0]) * 3600 + Integer.parseInt(hms[1]) * 60
+                    + Integer.parseInt(hms[2]);
+            int exercises = Integer.parseInt(stripLabel(parts[3], "Exercises:"));
+            appendRecord(name, timestamp, duration, exercises);
+            return true;
+        } catch (DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Skipping unreadable history line: " + line);
+            return false;
+        }
+    }
+
+    private static String stripLabel(String part, String label) {
+        String trimmed = part.trim();
+        if (trimmed.startsWith(label)) {
+            trimmed = trimmed.substring(label.length()).trim();
+        }
+        return trimmed;
+    }
+}
@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and latency histograms for the paths worth watching on real data:
+// routine load and save, history parsing, panel rebuilds, timer ticks and
+// sound cues. Recording is a few atomic adds, so it stays on all the time.
+// Every timed sample is also a JFR event (fittrack.Operation) whenever a
+// flight recording is running, e.g. with -XX:StartFlightRecording.
+//
+//   List<Routine> routines = Metrics.getInstance().timer("routines.load").time(() -> journal.load());
+public class Metrics {
+    // The JFR module is optional in trimmed runtimes; without it only the
+    // histograms are kept
+    private static final boolean JFR_AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private static Metrics instance;
+
+    private final ConcurrentSkipListMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Timer> timers = new ConcurrentSkipListMap<>();
+
+    public static synchronized Metrics getInstance() {
+        if (instance == null) {
+            instance = new Metrics();
+        }
+        return instance;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    // Sorted by name
+    public List<Counter> getCounters() {
+        return new ArrayList<>(counters.values());
+    }
+
+    // Sorted by name
+    public List<Timer> getTimers() {
+        return new ArrayList<>(timers.values());
+    }
+
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+    }
+
+    public static class Counter {
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        void reset() {
+            value.reset();
+        }
+    }
+
+    // Latency histogram with 16 buckets per power of two of nanoseconds, so a
+    // percentile is within about 3% of the true value in fixed memory
+    public static class Timer {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Runs the task and records how long it took, also when it throws
+        public <T, E extends Exception> T time(TimedTask<T, E> task) throws E {
+            Sample sample = start();
+            try {
+                return task.run();
+            } finally {
+                sample.close();
+            }
+        }
+
+        public <E extends Exception> void time(TimedAction<E> action) throws E {
+            Sample sample = start();
+            try {
+                action.run();
+            } finally {
+                sample.close();
+            }
+        }
+
+        private Sample start() {
+            return new Sample(this, JFR_AVAILABLE ? OperationEvent.start() : null);
+        }
+
+        public void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / (double) n / 1_000_000;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        // The latency below which the given fraction of samples fall, e.g. 0.99
+        public double getPercentileMillis(double fraction) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(bucketMiddle(i), maxNanos.get()) / 1_000_000.0;
+                }
+            }
+            return getMaxMillis();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+
+        // Values below 16 get a bucket each; above that the exponent and the next
+        // four bits pick it
+        private static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long bucketMiddle(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return low + (1L << shift) / 2;
+        }
+    }
+
+    public interface TimedTask<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    public interface TimedAction<E extends Exception> {
+        void run() throws E;
+    }
+
+    // One running measurement; closing it records the time
+    private static class Sample {
+        private final Timer timer;
+        private final Object event;
+        private final long startNanos = System.nanoTime();
+
+        private Sample(Timer timer, Object event) {
+            this.timer = timer;
+            this.event = event;
+        }
+
+        void close() {
+            timer.record(System.nanoTime() - startNanos);
+            if (event != null) {
+                OperationEvent.finish(event, timer.name);
+            }
+        }
+    }
+}
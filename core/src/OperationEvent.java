@@ -0,0 +1,37 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event for one timed operation from Metrics. Only Metrics touches this
+// class, and only when the jdk.jfr module is present.
+@Name("fittrack.Operation")
+@Label("FitTrack Operation")
+@Category("FitTrack")
+@Description("A routine load or save, history parse, panel rebuild, timer tick or sound cue")
+@StackTrace(false)
+class OperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    // Null when no recording wants the event, so nothing is kept around
+    static Object start() {
+        OperationEvent event = new OperationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void finish(Object started, String operation) {
+        OperationEvent event = (OperationEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+// The one thread that writes routines and history to disk. Callers update
+// their in-memory state, queue the write and get a future back, so no screen
+// waits on the disk. Writes run one at a time in the order they were queued.
+// A write is held back for a short moment; a later write for the same key
+// (the same routine, say) replaces it where it waits in the queue, so a burst
+// of edits across several routines costs one write per routine. Writes still
+// queued at exit are finished by a shutdown hook.
+public class PersistenceService {
+    private static final long COALESCE_MILLIS = 100;
+    private static final long EXIT_DRAIN_MILLIS = 5000;
+
+    private static final Metrics.Timer WRITE_TIMER = Metrics.getInstance().timer("persistence.write");
+    private static final Metrics.Counter COALESCED = Metrics.getInstance().counter("persistence.coalesced");
+    private static final Metrics.Counter FAILED = Metrics.getInstance().counter("persistence.failed");
+
+    private static PersistenceService instance;
+
+    public interface Write {
+        void run() throws IOException;
+    }
+
+    private static class Pending {
+        final String key;
+        final long due;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        Write write;
+
+        Pending(String key, Write write, long due) {
+            this.key = key;
+            this.write = write;
+            this.due = due;
+        }
+    }
+
+    // Guarded by this
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    // Queued writes that a later write for the same key may still replace
+    private final HashMap<String, Pending> replaceable = new HashMap<>();
+    private final long coalesceNanos;
+    private boolean writing = false;
+    private boolean draining = false;
+
+    // coalesceMillis is how long a write is held back for a follow-up to replace it
+    public PersistenceService(long coalesceMillis) {
+        this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(coalesceMillis);
+        Thread writer = new Thread(this::writeLoop, "persistence-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                flush(EXIT_DRAIN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "persistence-drain"));
+    }
+
+    public static synchronized PersistenceService getInstance() {
+        if (instance == null) {
+            instance = new PersistenceService(COALESCE_MILLIS);
+        }
+        return instance;
+    }
+
+    // Queues a write. When a write with the same key is queued and has not
+    // started yet, this one takes its place and both callers share its future,
+    // so writes for different keys must not depend on each other's order.
+    // A null key never coalesces and keeps its place: no later write replaces
+    // one queued before it.
+    public synchronized CompletableFuture<Void> submit(String key, Write write) {
+        if (key == null) {
+            replaceable.clear();
+        } else {
+            Pending queued = replaceable.get(key);
+            if (queued != null) {
+                queued.write = write;
+                COALESCED.increment();
+                return queued.future;
+            }
+        }
+        Pending pending = new Pending(key, write, System.nanoTime() + coalesceNanos);
+        queue.add(pending);
+        if (key != null) {
+            replaceable.put(key, pending);
+        }
+        notifyAll();
+        return pending.future;
+    }
+
+    // Blocks until the write is on disk, for callers that are already off the
+    // EDT such as imports and the CLI. Never call this from the writer itself.
+    public static <T> T await(CompletableFuture<T> write) throws IOException {
+        try {
+            return write.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // Waits up to timeoutMillis for every queued write to finish, writing held
+    // ones right away. Returns false if writes were still left.
+    public synchronized boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        draining = true;
+        notifyAll();
+        try {
+            while (!queue.isEmpty() || writing) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        } finally {
+            draining = false;
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Pending next;
+            synchronized (this) {
+                try {
+                    next = takeDue();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                writing = true;
+            }
+            try {
+                WRITE_TIMER.time(next.write::run);
+                next.future.complete(null);
+            } catch (IOException | RuntimeException e) {
+                FAILED.increment();
+                next.future.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    writing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    // Waits until the oldest write is due, or until a flush asks for it
+    private Pending takeDue() throws InterruptedException {
+        while (true) {
+            Pending head = queue.peekFirst();
+            if (head == null) {
+                wait();
+                continue;
+            }
+            long wait = head.due - System.nanoTime();
+            if (wait <= 0 || draining) {
+                queue.pollFirst();
+                if (head.key != null) {
+                    replaceable.remove(head.key, head);
+                }
+                return head;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, wait);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One member's data. Each member has a directory laid out the way config/
+// always was (routines.txt, routines.journal, history/, sessions/,
+// session.checkpoint); the default member uses config/ itself, so a
+// single-user install carries on unchanged. The routines, history, search
+// index and the rest are opened on first use and stay resident until
+// ProfileStore evicts the profile.
+//
+// Windows working on a member's data pin the profile so it is not evicted
+// (and later opened a second time) while they still write to it.
+// Every use is stamped, so ProfileStore can tell whether a profile was used
+// after it queued the profile's eviction.
+public class Profile {
+    private static final AtomicLong USES = new AtomicLong();
+
+    private final String id;
+    private final String name;
+    private final Path dir;
+
+    // Resident state, guarded by this
+    private RoutineRepository routines;
+    private HistoryStore history;
+    private SearchIndex searchIndex;
+    private DataTransfer transfer;
+    private Analytics analytics;
+    private SessionLog.Listener analyticsListener;
+    private SessionCheckpoint checkpoint;
+    private int pins;
+    private volatile long lastUse;
+
+    Profile(String id, String name, Path dir) {
+        this.id = id;
+        this.name = name;
+        this.dir = dir;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public String getRoutinesPath() {
+        return dir.resolve("routines.txt").toString();
+    }
+
+    public String getRoutinesJournalPath() {
+        return dir.resolve("routines.journal").toString();
+    }
+
+    public String getHistoryDir() {
+        return dir.resolve("history").toString();
+    }
+
+    public String getSessionsDir() {
+        return dir.resolve("sessions").toString();
+    }
+
+    public String getSessionCheckpointPath() {
+        return dir.resolve("session.checkpoint").toString();
+    }
+
+    // Only read once, to migrate it into the history store
+    public String getWorkoutHistoryPath() {
+        return dir.resolve("workout_history.txt").toString();
+    }
+
+    // Loads the routines, history and search index, so switching to the
+    // member afterwards needs no I/O
+    public void open() throws IOException {
+        getSearchIndex();
+    }
+
+    public synchronized boolean isOpen() {
+        return searchIndex != null;
+    }
+
+    public synchronized RoutineRepository getRoutines() throws IOException {
+        if (routines == null) {
+            RoutineRepository loaded = new RoutineRepository(
+                    new RoutineJournal(getRoutinesPath(), getRoutinesJournalPath()));
+            loaded.load();
+            routines = loaded;
+        }
+        return routines;
+    }
+
+    public synchronized HistoryStore getHistory() throws IOException {
+        if (history == null) {
+            Metrics.getInstance().timer("history.open").time(() -> {
+                HistoryStore opened = new HistoryStore(getHistoryDir());
+                int migrated = opened.migrateLegacyHistory(getWorkoutHistoryPath());
+                if (migrated > 0) {
+                    System.err.println("Migrated " + migrated + " workouts from workout_history.txt");
+                }
+                history = opened;
+            });
+        }
+        return history;
+    }
+
+    public synchronized SearchIndex getSearchIndex() throws IOException {
+        if (searchIndex == null) {
+            searchIndex = new SearchIndex(getRoutines(), getHistory());
+        }
+        return searchIndex;
+    }
+
+    public synchronized DataTransfer getTransfer() throws IOException {
+        if (transfer == null) {
+            transfer = new DataTransfer(getHistory(), getRoutines(), ForkJoinPool.commonPool());
+        }
+        return transfer;
+    }
+
+    public synchronized Analytics getAnalytics() {
+        if (analytics == null) {
+            Analytics created = new Analytics(getSessionsDir(), ZoneId.systemDefault(), ForkJoinPool.commonPool());
+            // Session logs of every member report to the same listeners
+            Path sessionsDir = dir.resolve("sessions");
+            analyticsListener = file -> {
+                if (file.startsWith(sessionsDir)) {
+                    created.invalidate();
+                }
+            };
+            SessionLog.addListener(analyticsListener);
+            analytics = created;
+        }
+        return analytics;
+    }
+
+    public synchronized SessionCheckpoint getCheckpoint() throws IOException {
+        if (checkpoint == null) {
+            checkpoint = new SessionCheckpoint(getSessionCheckpointPath());
+        }
+        return checkpoint;
+    }
+
+    public synchronized void pin() {
+        pins++;
+        touch();
+    }
+
+    public synchronized void unpin() {
+        pins = Math.max(0, pins - 1);
+        touch();
+    }
+
+    public synchronized boolean isPinned() {
+        return pins > 0;
+    }
+
+    // Stamps the profile as used now
+    void touch() {
+        lastUse = USES.incrementAndGet();
+    }
+
+    long getLastUse() {
+        return lastUse;
+    }
+
+    // The stamp of the latest use of any profile
+    static long uses() {
+        return USES.get();
+    }
+
+    // Drops everything resident. Called by ProfileStore once the persistence
+    // writer has finished this member's queued writes.
+    synchronized void close() {
+        if (history != null) {
+            history.flush();
+        }
+        if (analyticsListener != null) {
+            SessionLog.removeListener(analyticsListener);
+        }
+        routines = null;
+        history = null;
+        searchIndex = null;
+        transfer = null;
+        analytics = null;
+        analyticsListener = null;
+        checkpoint = null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
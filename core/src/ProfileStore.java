@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+// Every member of the gym and the profiles currently loaded. members.txt
+// lists the members as "id<TAB>name" lines and a member's data lives in
+// members/<id>/, except the default member's, which stays in config/.
+//
+// Only the most recently used profiles stay resident (8 by default, see
+// -Dfittrack.residentProfiles), in a LinkedHashMap kept in access order, so
+// memory stays flat however many members are on disk: the index costs a line
+// per member, and routines, history and search index are only loaded for
+// the recent ones. Switching back to one of those needs no I/O. The current
+// profile and pinned ones are never evicted, and an evicted profile is only
+// closed once the persistence writer has finished its queued writes.
+public class ProfileStore {
+    public static final String DEFAULT_ID = "default";
+    private static final String DEFAULT_NAME = "User";
+    private static final int RESIDENT_PROFILES = Integer.getInteger("fittrack.residentProfiles", 8);
+    private static final int MAX_ID_LENGTH = 32;
+    private static final Pattern NOT_ID = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Metrics.Timer OPEN_TIMER = Metrics.getInstance().timer("profiles.open");
+    private static final Metrics.Counter EVICTED = Metrics.getInstance().counter("profiles.evicted");
+
+    private static ProfileStore instance;
+
+    public static class Member {
+        private final String id;
+        private final String name;
+
+        Member(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final Path configDir;
+    private final Path membersDir;
+    private final Path indexFile;
+    private final int capacity;
+    private final PersistenceService writer;
+
+    // Guarded by this
+    private final LinkedHashMap<String, String> members = new LinkedHashMap<>(); // id -> name, in index order
+    private final LinkedHashMap<String, Profile> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private Profile current;
+
+    public ProfileStore(String configDir, String membersDir, String indexFile, int capacity,
+            PersistenceService writer) throws IOException {
+        this.configDir = Paths.get(configDir);
+        this.membersDir = Paths.get(membersDir);
+        this.indexFile = Paths.get(indexFile);
+        this.capacity = Math.max(1, capacity);
+        this.writer = writer;
+        readIndex();
+    }
+
+    public static synchronized ProfileStore getInstance() {
+        if (instance == null) {
+            AppPaths paths = AppPaths.getInstance();
+            try {
+                instance = new ProfileStore(paths.getConfigDir(), paths.getMembersDir(),
+                        paths.getMembersIndexPath(), RESIDENT_PROFILES, PersistenceService.getInstance());
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read the member list: " + e.getMessage(), e);
+            }
+        }
+        return instance;
+    }
+
+    private void readIndex() throws IOException {
+        members.put(DEFAULT_ID, DEFAULT_NAME);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                members.put(line.substring(0, tab), line.substring(tab + 1));
+            }
+        }
+    }
+
+    // In the order they were added, the default member first
+    public synchronized List<Member> getMembers() {
+        List<Member> list = new ArrayList<>(members.size());
+        for (Map.Entry<String, String> member : members.entrySet()) {
+            list.add(new Member(member.getKey(), member.getValue()));
+        }
+        return list;
+    }
+
+    // Adds the member right away and queues the index write; the future
+    // completes once the member is on disk. The member's directory is
+    // created when their profile is first opened.
+    public CompletableFuture<Member> addMember(String name) {
+        String cleaned = WHITESPACE.matcher(name).replaceAll(" ").trim();
+        if (cleaned.isEmpty()) {
+            throw new IllegalArgumentException("Member name cannot be empty");
+        }
+        Member member;
+        String index;
+        synchronized (this) {
+            member = new Member(uniqueId(cleaned), cleaned);
+            members.put(member.getId(), member.getName());
+            index = renderIndex();
+        }
+        return writer.submit("members " + indexFile, () -> writeIndex(index)).thenApply(done -> member);
+    }
+
+    // A directory name from the member's name: lowercase letters, digits and
+    // dashes, with accents dropped
+    private String uniqueId(String name) {
+        String plain = ACCENTS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        String base = NOT_ID.matcher(plain.toLowerCase(Locale.ROOT)).replaceAll("-");
+        base = base.substring(base.startsWith("-") ? 1 : 0, Math.min(base.length(), MAX_ID_LENGTH));
+        if (base.endsWith("-")) {
+            base = base.substring(0, base.length() - 1);
+        }
+        if (base.isEmpty()) {
+            base = "member";
+        }
+        String id = base;
+        for (int n = 2; members.containsKey(id) || Files.exists(directoryOf(id)); n++) {
+            id = base + "-" + n;
+        }
+        return id;
+    }
+
+    private String renderIndex() {
+        StringBuilder index = new StringBuilder();
+        for (Map.Entry<String, String> member : members.entrySet()) {
+            if (!member.getKey().equals(DEFAULT_ID)) {
+                index.append(member.getKey()).append('\t').append(member.getValue()).append('\n');
+            }
+        }
+        return index.toString();
+    }
+
+    private void writeIndex(String index) throws IOException {
+        Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Files.writeString(tempFile, index, StandardCharsets.UTF_8);
+        Files.move(tempFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path directoryOf(String id) {
+        return id.equals(DEFAULT_ID) ? configDir : membersDir.resolve(id);
+    }
+
+    // The profile the app is working with; the default member's until a switch
+    public synchronized Profile getCurrent() throws IOException {
+        if (current == null) {
+            current = get(DEFAULT_ID);
+        }
+        return current;
+    }
+
+    // Makes the member current, loading their profile first unless it is
+    // resident. Only a member who is not resident costs any I/O.
+    public Profile switchTo(String id) throws IOException {
+        Profile profile = get(id);
+        if (!profile.isOpen()) {
+            OPEN_TIMER.time(profile::open);
+        }
+        synchronized (this) {
+            if (current != null && current != profile) {
+                current.touch();
+            }
+            current = profile;
+        }
+        return profile;
+    }
+
+    // The member's resident profile, or a new, not yet loaded one that
+    // takes the place of the least recently used
+    public synchronized Profile get(String id) throws IOException {
+        Profile profile = resident.get(id);
+        if (profile != null) {
+            profile.touch();
+            return profile;
+        }
+        String name = members.get(id);
+        if (name == null) {
+            throw new IllegalArgumentException("No such member: " + id);
+        }
+        Path dir = directoryOf(id);
+        Files.createDirectories(dir.resolve("history"));
+        Files.createDirectories(dir.resolve("sessions"));
+        profile = new Profile(id, name, dir);
+        profile.touch();
+        resident.put(id, profile);
+        if (resident.size() > capacity) {
+            // Queued behind every write already submitted, so it runs once
+            // they are on disk, and nobody waits for it
+            long queuedAt = Profile.uses();
+            writer.submit(null, () -> evict(queuedAt));
+        }
+        return profile;
+    }
+
+    public synchronized boolean isResident(String id) {
+        return resident.containsKey(id);
+    }
+
+    // Unloads the least recently used profiles over capacity. A profile used
+    // since the eviction was queued may have writes queued behind it, so it
+    // stays resident until a later eviction.
+    private void evict(long queuedAt) {
+        List<Profile> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Profile> eldestFirst = resident.values().iterator();
+            while (resident.size() > capacity && eldestFirst.hasNext()) {
+                Profile profile = eldestFirst.next();
+                if (profile != current && !profile.isPinned() && profile.getLastUse() < queuedAt) {
+                    eldestFirst.remove();
+                    evicted.add(profile);
+                }
+            }
+        }
+        for (Profile profile : evicted) {
+            profile.close();
+            EVICTED.increment();
+        }
+    }
+}
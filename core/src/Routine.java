@@ -0,0 +1,83 @@
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+public class Routine {
+    private long id; // 0 until the routine is first saved
+    private String name;
+    private ArrayList<Exercise> exercises;
+    private LocalDateTime date;
+    private boolean isCompleted;
+
+
+    public Routine(String name) {
+        this.name = name;
+        this.exercises = new ArrayList<>();
+        this.isCompleted = false;
+    }
+
+    // setters
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    // getters
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ArrayList<Exercise> getExercises() {
+        return exercises;
+    }
+
+    public boolean isCompleted() {
+        return isCompleted;
+    }
+
+    // exercise management
+    public void addExercise(Exercise exercise) {
+        exercises.add(exercise);
+    }
+
+    public void removeExercise(int index) {
+        if (index > 0 && index < exercises.size()) {
+            exercises.remove(index);
+        }
+    }
+
+    // A copy with its own exercises, for writing out on another thread while
+    // screens keep editing this one
+    Routine copy() {
+        Routine copy = new Routine(name);
+        copy.id = id;
+        copy.date = date;
+        copy.isCompleted = isCompleted;
+        for (Exercise exercise : exercises) {
+            copy.exercises.add(new Exercise(exercise.getName(), exercise.getWeight(), exercise.getReps(),
+                    exercise.getSets(), exercise.getCompletedSets()));
+        }
+        return copy;
+    }
+
+    // Convert routine to string for saving
+    @Override
+    public String toString() {
+        return RoutineWriter.toText(this);
+    }
+
+    // Parses routines in routines.txt format. Saving and loading the library
+    // goes through RoutineRepository.
+    static ArrayList<Routine> readRoutines(BufferedReader reader) throws IOException {
+        return new RoutineReader(reader, "routines").readRoutines();
+    }
+
+}
@@ -0,0 +1,351 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Crash-safe routine storage. routines.txt holds a snapshot of the library and
+// every change since then is appended to routines.journal as a small
+// checksummed record. A compaction on the persistence writer folds the journal
+// into a fresh snapshot, which replaces the old one with an atomic rename.
+//
+// Journal record: int payload length, int CRC32, byte op, long routine id,
+// payload (the routine in routines.txt format, empty for deletes)
+public class RoutineJournal {
+    static final byte OP_ADD = 1;
+    static final byte OP_UPDATE = 2;
+    static final byte OP_DELETE = 3;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2 + 1 + Long.BYTES;
+    private static final long COMPACT_THRESHOLD_BYTES = 64 * 1024;
+    private static final Metrics.Timer LOAD_TIMER = Metrics.getInstance().timer("routines.load");
+    private static final Metrics.Timer SAVE_TIMER = Metrics.getInstance().timer("routines.save");
+    private static final Metrics.Timer COMPACT_TIMER = Metrics.getInstance().timer("routines.compact");
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    // Queue that compactions go on, the same one the repository's saves use
+    private final PersistenceService writer;
+
+    // Folded state of snapshot plus journal, as routines.txt text keyed by id
+    private final LinkedHashMap<Long, String> state = new LinkedHashMap<>();
+    private long journalSize;
+    private long nextId = 1;
+    private boolean compactionPending = false;
+
+    public RoutineJournal(String snapshotFile, String journalFile) {
+        this(snapshotFile, journalFile, PersistenceService.getInstance());
+    }
+
+    public RoutineJournal(String snapshotFile, String journalFile, PersistenceService writer) {
+        this.snapshotFile = Paths.get(snapshotFile);
+        this.journalFile = Paths.get(journalFile);
+        this.writer = writer;
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public PersistenceService getWriter() {
+        return writer;
+    }
+
+    // Reads the snapshot and replays the journal on top of it. A torn record at
+    // the end of the journal (from a crash mid-append) is cut off.
+    public synchronized ArrayList<Routine> load() throws IOException {
+        return LOAD_TIMER.time(() -> {
+            state.clear();
+            LinkedHashMap<Long, Routine> routines = new LinkedHashMap<>();
+            boolean needsCompaction = false;
+
+            if (Files.exists(snapshotFile)) {
+                List<Routine> snapshot;
+                try (BufferedReader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+                    snapshot = Routine.readRoutines(reader);
+                }
+                long maxId = 0;
+                for (Routine routine : snapshot) {
+                    maxId = Math.max(maxId, routine.getId());
+                }
+                for (Routine routine : snapshot) {
+                    if (routine.getId() == 0) {
+                        // Snapshot from before routines had ids. They are handed out in
+                        // file order, so the same snapshot always gets the same ids.
+                        routine.setId(++maxId);
+                        needsCompaction = true;
+                    }
+                    routines.put(routine.getId(), routine);
+                }
+            }
+
+            journalSize = replayJournal(routines);
+            if (journalSize > 0) {
+                needsCompaction = true;
+            }
+
+            for (Routine routine : routines.values()) {
+                nextId = Math.max(nextId, routine.getId() + 1);
+                state.put(routine.getId(), RoutineWriter.toText(routine));
+            }
+            if (needsCompaction) {
+                scheduleCompaction();
+            }
+            return new ArrayList<>(routines.values());
+        });
+    }
+
+    private long replayJournal(LinkedHashMap<Long, Routine> routines) throws IOException {
+        if (!Files.exists(journalFile)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+        long valid = 0;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || buffer.remaining() < 1 + Long.BYTES + length) {
+                break;
+            }
+            byte op = buffer.get();
+            long id = buffer.getLong();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            if (checksum(op, id, payload) != checksum) {
+                break;
+            }
+            applyRecord(routines, op, id, payload);
+            valid = buffer.position();
+        }
+
+        if (valid < buffer.capacity()) {
+            System.err.println("Discarding " + (buffer.capacity() - valid) + " damaged bytes from " + journalFile);
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return valid;
+    }
+
+    private void applyRecord(LinkedHashMap<Long, Routine> routines, byte op, long id, byte[] payload)
+            throws IOException {
+        if (op == OP_DELETE) {
+            routines.remove(id);
+            return;
+        }
+        String text = new String(payload, StandardCharsets.UTF_8);
+        List<Routine> parsed = Routine.readRoutines(new BufferedReader(new StringReader(text)));
+        if (!parsed.isEmpty()) {
+            Routine routine = parsed.get(0);
+            routine.setId(id);
+            routines.put(id, routine);
+        }
+    }
+
+    // Gives a new routine its id; returns true if it did not have one yet
+    public synchronized boolean assignId(Routine routine) {
+        if (routine.getId() != 0) {
+            return false;
+        }
+        routine.setId(nextId++);
+        return true;
+    }
+
+    // Appends an add or update record for the routine, giving it an id first if it is new
+    public void recordSave(Routine routine) throws IOException {
+        boolean added = assignId(routine);
+        recordSave(routine.getId(), RoutineWriter.toText(routine), added);
+    }
+
+    // Appends a record for routine text rendered earlier, so a queued write
+    // stores the routine as it was when it was saved
+    public void recordSave(long id, String text, boolean added) throws IOException {
+        append(added ? OP_ADD : OP_UPDATE, id, text.getBytes(StandardCharsets.UTF_8), text);
+    }
+
+    public void recordDelete(long id) throws IOException {
+        if (id != 0) {
+            append(OP_DELETE, id, new byte[0], null);
+        }
+    }
+
+    private synchronized void append(byte op, long id, byte[] payload, String text) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        putRecord(record, op, id, payload);
+        write(record);
+
+        if (op == OP_DELETE) {
+            state.remove(id);
+        } else {
+            state.put(id, text);
+        }
+    }
+
+    // Appends add records for routines that already have their ids, all in
+    // one write, so an import costs a single sync however many it brings in
+    public synchronized void recordAdds(List<Routine> routines) throws IOException {
+        List<String> texts = new ArrayList<>(routines.size());
+        List<byte[]> payloads = new ArrayList<>(routines.size());
+        int size = 0;
+        for (Routine routine : routines) {
+            String text = RoutineWriter.toText(routine);
+            byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+            texts.add(text);
+            payloads.add(payload);
+            size += RECORD_HEADER_SIZE + payload.length;
+        }
+        ByteBuffer records = ByteBuffer.allocate(size);
+        for (int i = 0; i < routines.size(); i++) {
+            putRecord(records, OP_ADD, routines.get(i).getId(), payloads.get(i));
+        }
+        write(records);
+
+        for (int i = 0; i < routines.size(); i++) {
+            state.put(routines.get(i).getId(), texts.get(i));
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, byte op, long id, byte[] payload) {
+        buffer.putInt(payload.length);
+        buffer.putInt(checksum(op, id, payload));
+        buffer.put(op);
+        buffer.putLong(id);
+        buffer.put(payload);
+    }
+
+    private void write(ByteBuffer records) throws IOException {
+        records.flip();
+        SAVE_TIMER.time(() -> {
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (records.hasRemaining()) {
+                    channel.write(records);
+                }
+                channel.force(false);
+            }
+        });
+        journalSize += records.capacity();
+        if (journalSize >= COMPACT_THRESHOLD_BYTES) {
+            scheduleCompaction();
+        }
+    }
+
+    // Replaces the whole library at once, handing out ids first: streams the
+    // routines into a new snapshot and empties the journal. The routines must
+    // not change meanwhile; RoutineRepository passes copies.
+    public synchronized void replaceAll(List<Routine> routines) throws IOException {
+        SAVE_TIMER.time(() -> {
+            state.clear();
+            for (Routine routine : routines) {
+                assignId(routine);
+                state.put(routine.getId(), RoutineWriter.toText(routine));
+            }
+            Path tempFile = tempSnapshotFile();
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                new RoutineWriter(writer).writeRoutines(routines);
+            }
+            forceToDisk(tempFile);
+            swapInSnapshot(tempFile);
+            replaceJournal(new byte[0]);
+        });
+    }
+
+    private synchronized void scheduleCompaction() {
+        if (compactionPending) {
+            return;
+        }
+        compactionPending = true;
+        writer.submit("compact " + snapshotFile, this::compact).exceptionally(e -> {
+            System.err.println("Warning: Routine journal compaction failed: " + e.getMessage());
+            return null;
+        });
+    }
+
+    // Writes the folded state as a new snapshot, swaps it in, and keeps only the
+    // journal records appended while the snapshot was being written
+    void compact() throws IOException {
+        COMPACT_TIMER.time(() -> {
+            List<String> snapshot;
+            long foldedBytes;
+            synchronized (this) {
+                compactionPending = false;
+                snapshot = new ArrayList<>(state.values());
+                foldedBytes = journalSize;
+            }
+
+            Path tempFile = writeTempSnapshot(snapshot);
+
+            synchronized (this) {
+                swapInSnapshot(tempFile);
+                replaceJournal(readJournalFrom(foldedBytes));
+            }
+        });
+    }
+
+    private byte[] readJournalFrom(long offset) throws IOException {
+        if (!Files.exists(journalFile)) {
+            return new byte[0];
+        }
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            long remaining = Math.max(0, channel.size() - offset);
+            ByteBuffer tail = ByteBuffer.allocate((int) remaining);
+            while (tail.hasRemaining() && channel.read(tail, offset + tail.position()) >= 0) {
+                // keep reading until the tail is complete
+            }
+            return tail.array();
+        }
+    }
+
+    // Swaps in a journal holding just the given records, written and synced
+    // beside it first, so a crash keeps either the old journal or the new one
+    private void replaceJournal(byte[] records) throws IOException {
+        Path tempFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        Files.write(tempFile, records);
+        forceToDisk(tempFile);
+        Files.move(tempFile, journalFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        journalSize = records.length;
+    }
+
+    private Path writeTempSnapshot(List<String> routines) throws IOException {
+        Path tempFile = tempSnapshotFile();
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (String routine : routines) {
+                writer.write(routine);
+            }
+        }
+        forceToDisk(tempFile);
+        return tempFile;
+    }
+
+    private Path tempSnapshotFile() {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+    }
+
+    private void forceToDisk(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private void swapInSnapshot(Path tempFile) throws IOException {
+        Files.move(tempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static int checksum(byte op, long id, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(op);
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, id));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,299 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Single-pass tokenizer for routines.txt. Lines are scanned in place inside a
+// reusable char buffer and numbers are parsed straight from the characters, so
+// the only objects created are the routines, the exercises and their names.
+// Malformed lines are skipped and reported with their line number.
+public class RoutineReader {
+    private static final char[] ROUTINE_START = "ROUTINE_START".toCharArray();
+    private static final char[] ROUTINE_END = "ROUTINE_END".toCharArray();
+    private static final char[] EXERCISE = "EXERCISE".toCharArray();
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final Reader reader;
+    private final String source;
+    private char[] buffer;
+    private int limit; // number of chars in the buffer
+    private boolean endOfInput = false;
+    private int lineNumber = 0;
+
+    // Bounds of the current line and field inside the buffer
+    private int lineStart;
+    private int lineEnd;
+    private int nextLineStart;
+    private int cursor;
+    private int fieldStart;
+    private int fieldEnd;
+
+    private final List<String> problems = new ArrayList<>();
+
+    public RoutineReader(Reader reader, String source) {
+        this.reader = reader;
+        this.source = source;
+        this.buffer = new char[8192];
+    }
+
+    // Parser over text that is already in memory
+    private RoutineReader(char[] text, String source) {
+        this.reader = null;
+        this.source = source;
+        this.buffer = text;
+        this.limit = text.length;
+        this.endOfInput = true;
+    }
+
+    // Problems found so far, as "<source> line <n>: <message>"
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    public ArrayList<Routine> readRoutines() throws IOException {
+        ArrayList<Routine> routines = new ArrayList<>();
+        Routine currentRoutine = null;
+        int routineLine = 0;
+
+        while (nextLine()) {
+            if (lineStart == lineEnd) {
+                continue; // blank line
+            }
+            try {
+                nextField();
+                if (fieldEquals(ROUTINE_START)) {
+                    if (currentRoutine != null) {
+                        problem(routineLine, "routine '" + currentRoutine.getName() + "' has no ROUTINE_END");
+                    }
+                    currentRoutine = readRoutineStart();
+                    routineLine = lineNumber;
+                } else if (fieldEquals(EXERCISE)) {
+                    if (currentRoutine == null) {
+                        throw new MalformedLineException("EXERCISE outside of a routine");
+                    }
+                    currentRoutine.addExercise(readExerciseFields());
+                } else if (fieldEquals(ROUTINE_END)) {
+                    if (currentRoutine == null) {
+                        throw new MalformedLineException("ROUTINE_END without ROUTINE_START");
+                    }
+                    routines.add(currentRoutine);
+                    currentRoutine = null;
+                } else {
+                    throw new MalformedLineException("unknown record '" + fieldText() + "'");
+                }
+            } catch (MalformedLineException e) {
+                problem(lineNumber, e.getMessage());
+            }
+        }
+
+        if (currentRoutine != null) {
+            problem(routineLine, "routine '" + currentRoutine.getName() + "' has no ROUTINE_END");
+        }
+        for (String message : problems) {
+            System.err.println("Warning: " + message);
+        }
+        return routines;
+    }
+
+    // Parses the fields of an exercise line without the leading "EXERCISE||"
+    public static Exercise parseExercise(String text) {
+        RoutineReader parser = new RoutineReader(text.toCharArray(), "exercise");
+        try {
+            parser.nextLine();
+            return parser.readExerciseFields();
+        } catch (MalformedLineException | IOException e) {
+            throw new IllegalArgumentException("Malformed exercise '" + text + "': " + e.getMessage());
+        }
+    }
+
+    private Routine readRoutineStart() throws MalformedLineException {
+        if (!nextField() || fieldStart == fieldEnd) {
+            throw new MalformedLineException("routine without a name");
+        }
+        Routine routine = new Routine(fieldText());
+        if (nextField()) {
+            routine.setId(parseLong("routine id"));
+        }
+        return routine;
+    }
+
+    private Exercise readExerciseFields() throws MalformedLineException {
+        if (!nextField()) {
+            throw new MalformedLineException("exercise without a name");
+        }
+        String name = fieldText();
+        requireField("weight");
+        double weight = parseDouble("weight");
+        requireField("reps");
+        int reps = parseInt("reps");
+        requireField("sets");
+        int sets = parseInt("sets");
+        // Older files may not have the completed sets field
+        int completedSets = nextField() ? parseInt("completed sets") : 0;
+        return new Exercise(name, weight, reps, sets, completedSets);
+    }
+
+    private void requireField(String field) throws MalformedLineException {
+        if (!nextField()) {
+            throw new MalformedLineException("missing " + field);
+        }
+    }
+
+    // Finds the next line in the buffer, refilling it as needed. Lines are
+    // never copied; the buffer only grows for lines longer than itself.
+    private boolean nextLine() throws IOException {
+        int start = nextLineStart;
+        int scan = start;
+        while (true) {
+            while (scan < limit && buffer[scan] != '\n') {
+                scan++;
+            }
+            if (scan < limit || endOfInput) {
+                break;
+            }
+            // Line continues past the buffer: move it to the front and read more
+            int carried = limit - start;
+            if (carried == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            } else {
+                System.arraycopy(buffer, start, buffer, 0, carried);
+            }
+            scan -= start;
+            start = 0;
+            limit = carried;
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                limit += read;
+            }
+        }
+
+        if (start >= limit) {
+            nextLineStart = limit;
+            return false;
+        }
+        lineNumber++;
+        lineStart = start;
+        lineEnd = scan;
+        if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') {
+            lineEnd--;
+        }
+        nextLineStart = scan < limit ? scan + 1 : limit;
+        cursor = lineStart;
+        return true;
+    }
+
+    // Moves to the next "||"-separated field of the current line
+    private boolean nextField() {
+        if (cursor > lineEnd) {
+            return false;
+        }
+        fieldStart = cursor;
+        int scan = cursor;
+        while (scan < lineEnd && !(buffer[scan] == '|' && scan + 1 < lineEnd && buffer[scan + 1] == '|')) {
+            scan++;
+        }
+        fieldEnd = scan;
+        cursor = scan < lineEnd ? scan + 2 : lineEnd + 1;
+        return true;
+    }
+
+    private boolean fieldEquals(char[] expected) {
+        if (fieldEnd - fieldStart != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer[fieldStart + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String fieldText() {
+        return new String(buffer, fieldStart, fieldEnd - fieldStart);
+    }
+
+    private long parseLong(String field) throws MalformedLineException {
+        int i = fieldStart;
+        boolean negative = i < fieldEnd && buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == fieldEnd) {
+            throw new MalformedLineException("expected a number for " + field);
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw new MalformedLineException("expected a number for " + field + ", got '" + fieldText() + "'");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private int parseInt(String field) throws MalformedLineException {
+        long value = parseLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new MalformedLineException("number out of range for " + field + ": " + value);
+        }
+        return (int) value;
+    }
+
+    // Plain decimals with up to 15 significant digits are exact as
+    // mantissa / 10^fractionDigits; anything else goes through the JDK parser
+    private double parseDouble(String field) throws MalformedLineException {
+        int i = fieldStart;
+        boolean negative = i < fieldEnd && buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean simple = i < fieldEnd;
+        for (; i < fieldEnd && simple; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                simple = mantissa < MAX_EXACT_MANTISSA && digits <= 18;
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                simple = false;
+            }
+        }
+        if (simple && digits > 0 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+
+        try {
+            return Double.parseDouble(fieldText());
+        } catch (NumberFormatException e) {
+            throw new MalformedLineException("expected a number for " + field + ", got '" + fieldText() + "'");
+        }
+    }
+
+    private void problem(int line, String message) {
+        problems.add(source + " line " + line + ": " + message);
+    }
+
+    // Thrown for a bad line; cheap because it carries no stack trace
+    private static class MalformedLineException extends Exception {
+        MalformedLineException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// All routines of the app, indexed by id and by name so lookups, deletes and
+// duplicate-name checks are constant time. Iteration keeps the order routines
+// were loaded or added in. Changes take effect in memory and are announced to
+// listeners right away; the journal write is queued on the persistence
+// writer, and the returned future completes once it is on disk.
+public class RoutineRepository {
+    public enum Change {
+        ADDED, UPDATED, REMOVED, RELOADED
+    }
+
+    public interface Listener {
+        // routine is null for RELOADED
+        void routinesChanged(Change change, Routine routine);
+    }
+
+    private final RoutineJournal journal;
+    private final PersistenceService writer;
+    private final LinkedHashMap<Long, Routine> byId = new LinkedHashMap<>();
+    private final HashMap<String, Routine> byName = new HashMap<>();
+    // Name each routine is indexed under, since screens rename routines in place
+    private final HashMap<Long, String> indexedNames = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Writes go on the journal's writer, so saves and the compactions that
+    // fold them share one queue
+    public RoutineRepository(RoutineJournal journal) {
+        this.journal = journal;
+        this.writer = journal.getWriter();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fire(Change change, Routine routine) {
+        for (Listener listener : listeners) {
+            listener.routinesChanged(change, routine);
+        }
+    }
+
+    public void load() throws IOException {
+        ArrayList<Routine> loaded = journal.load();
+        synchronized (this) {
+            clearIndexes();
+            for (Routine routine : loaded) {
+                index(routine);
+            }
+        }
+        fire(Change.RELOADED, null);
+    }
+
+    // Routines in display order, copied so other threads can change the
+    // repository while the caller iterates
+    public synchronized List<Routine> getAll() {
+        return new ArrayList<>(byId.values());
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    public synchronized Routine findById(long id) {
+        return byId.get(id);
+    }
+
+    public synchronized Routine findByName(String name) {
+        return byName.get(name);
+    }
+
+    public synchronized boolean contains(Routine routine) {
+        return routine.getId() != 0 && byId.get(routine.getId()) == routine;
+    }
+
+    // True when another routine already uses the name
+    public synchronized boolean isNameTaken(String name, Routine except) {
+        Routine existing = byName.get(name);
+        return existing != null && existing != except;
+    }
+
+    // Adds a new routine or records changes to an existing one. The routine is
+    // rendered now, so later edits to it wait for the next save.
+    public CompletableFuture<Void> save(Routine routine) {
+        boolean added = !contains(routine);
+        boolean newId = journal.assignId(routine);
+        long id = routine.getId();
+        String text = RoutineWriter.toText(routine);
+        synchronized (this) {
+            unindexName(id, routine);
+            index(routine);
+        }
+        fire(added ? Change.ADDED : Change.UPDATED, routine);
+        return writer.submit(writeKey(id), () -> journal.recordSave(id, text, newId));
+    }
+
+    public CompletableFuture<Void> delete(Routine routine) {
+        if (!contains(routine)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long id = routine.getId();
+        synchronized (this) {
+            byId.remove(id);
+            unindexName(id, routine);
+        }
+        fire(Change.REMOVED, routine);
+        return writer.submit(writeKey(id), () -> journal.recordDelete(id));
+    }
+
+    public CompletableFuture<Void> deleteByName(String name) {
+        Routine routine = findByName(name);
+        return routine != null ? delete(routine) : CompletableFuture.completedFuture(null);
+    }
+
+    // Adds the routines whose names are still free, in one step with the index
+    // update, and journals them as one write. The future completes with the
+    // routines that were added once they are on disk.
+    public CompletableFuture<List<Routine>> merge(Collection<Routine> routines) {
+        List<Routine> added = new ArrayList<>();
+        List<Routine> copies = new ArrayList<>();
+        synchronized (this) {
+            for (Routine routine : routines) {
+                if (byName.containsKey(routine.getName())) {
+                    continue;
+                }
+                routine.setId(0);
+                journal.assignId(routine);
+                index(routine);
+                added.add(routine);
+                copies.add(routine.copy());
+            }
+        }
+        if (added.isEmpty()) {
+            return CompletableFuture.completedFuture(added);
+        }
+        for (Routine routine : added) {
+            fire(Change.ADDED, routine);
+        }
+        return writer.submit(null, () -> journal.recordAdds(copies)).thenApply(done -> added);
+    }
+
+    // Replaces every routine with a fresh snapshot. The writer streams copies
+    // taken here, since screens edit routines in place. It goes without a key:
+    // saves queued before it must not be moved after it, or the reverse.
+    public CompletableFuture<Void> replaceAll(List<Routine> routines) {
+        List<Routine> copies = new ArrayList<>(routines.size());
+        synchronized (this) {
+            clearIndexes();
+            for (Routine routine : routines) {
+                journal.assignId(routine);
+                index(routine);
+                copies.add(routine.copy());
+            }
+        }
+        fire(Change.RELOADED, null);
+        return writer.submit(null, () -> journal.replaceAll(copies));
+    }
+
+    // Queued writes for the same routine fold into the last one. Every member's
+    // repository shares the writer, so the key names the journal too.
+    private String writeKey(long id) {
+        return "routine " + id + " in " + journal.getSnapshotFile();
+    }
+
+    private void index(Routine routine) {
+        byId.put(routine.getId(), routine);
+        byName.put(routine.getName(), routine);
+        indexedNames.put(routine.getId(), routine.getName());
+    }
+
+    private void unindexName(long id, Routine routine) {
+        String oldName = indexedNames.remove(id);
+        if (oldName != null && byName.get(oldName) == routine) {
+            byName.remove(oldName);
+        }
+    }
+
+    private void clearIndexes() {
+        byId.clear();
+        byName.clear();
+        indexedNames.clear();
+    }
+}
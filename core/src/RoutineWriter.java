@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.util.List;
+
+// Writes routines in routines.txt format straight into a Writer or
+// StringBuilder. Numbers are written digit by digit, so the output never
+// depends on the default locale and reads back to exactly the same values.
+public class RoutineWriter {
+    private static final String SEPARATOR = "||";
+
+    private final Appendable out;
+    private final char[] digits = new char[20];
+
+    public RoutineWriter(Appendable out) {
+        this.out = out;
+    }
+
+    public void writeRoutines(List<Routine> routines) throws IOException {
+        for (Routine routine : routines) {
+            writeRoutine(routine);
+        }
+    }
+
+    public void writeRoutine(Routine routine) throws IOException {
+        out.append("ROUTINE_START||").append(routine.getName()).append(SEPARATOR);
+        writeLong(routine.getId());
+        out.append('\n');
+
+        for (Exercise exercise : routine.getExercises()) {
+            out.append("EXERCISE||");
+            writeExercise(exercise);
+            out.append('\n');
+        }
+
+        out.append("ROUTINE_END\n");
+    }
+
+    // Writes the exercise fields without the leading "EXERCISE||"
+    public void writeExercise(Exercise exercise) throws IOException {
+        out.append(exercise.getName()).append(SEPARATOR);
+        writeWeight(exercise.getWeight());
+        out.append(SEPARATOR);
+        writeLong(exercise.getReps());
+        out.append(SEPARATOR);
+        writeLong(exercise.getSets());
+        out.append(SEPARATOR);
+        writeLong(exercise.getCompletedSets());
+    }
+
+    // Weights are normally whole hundredths and keep the familiar "60.00" form.
+    // Any other value is written in full so it still reads back exactly.
+    public void writeWeight(double weight) throws IOException {
+        long hundredths = Math.round(weight * 100);
+        if (Math.abs(hundredths) < (1L << 53) && hundredths / 100.0 == weight) {
+            if (hundredths < 0) {
+                out.append('-');
+                hundredths = -hundredths;
+            }
+            writeLong(hundredths / 100);
+            out.append('.');
+            long fraction = hundredths % 100;
+            out.append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+        } else {
+            out.append(Double.toString(weight));
+        }
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            out.append(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        int position = digits.length;
+        do {
+            digits[--position] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = position; i < digits.length; i++) {
+            out.append(digits[i]);
+        }
+    }
+
+    public static String toText(Routine routine) {
+        StringBuilder sb = new StringBuilder(64 + routine.getExercises().size() * 48);
+        try {
+            new RoutineWriter(sb).writeRoutine(routine);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    public static String toText(Exercise exercise) {
+        StringBuilder sb = new StringBuilder(48);
+        try {
+            new RoutineWriter(sb).writeExercise(exercise);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,254 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+// In-memory search over routine names, exercise names and workout history.
+// Terms are lowercased words kept in sorted maps, so a query word matches
+// every term it is a prefix of with one subMap range, and each term lists the
+// routines (or history routine names) containing it. Routines are reindexed
+// one at a time as the repository announces changes and history records are
+// indexed as they are appended, so nothing is rebuilt while the app runs.
+//
+// History records are kept as two int columns, routine name id and day, and
+// matched newest first, so a query stops as soon as it has enough results.
+public class SearchIndex {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final RoutineRepository repository;
+    private final HistoryStore history;
+
+    // Routine name and exercise name terms -> routine ids
+    private final TreeMap<String, Set<Long>> routineTerms = new TreeMap<>();
+    private final Map<Long, Set<String>> termsByRoutine = new HashMap<>();
+
+    // History routine name terms -> history routine name ids, and "yyyy-mm-dd" -> epoch day
+    private final TreeMap<String, Set<Integer>> historyTerms = new TreeMap<>();
+    private final Set<Integer> indexedHistoryNames = new HashSet<>();
+    private final TreeMap<String, Integer> dayTerms = new TreeMap<>();
+    private int[] recordNames = new int[1024];
+    private int[] recordDays = new int[1024];
+    private int indexedRecords;
+    private int historyGeneration;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long dayStart = Long.MAX_VALUE; // bounds of the last record's day, in epoch seconds
+    private long dayEnd = Long.MIN_VALUE;
+    private int day;
+
+    public SearchIndex(RoutineRepository repository, HistoryStore history) {
+        this.repository = repository;
+        this.history = history;
+        repository.addListener(this::routinesChanged);
+        reindexRoutines();
+        syncHistory();
+    }
+
+    private synchronized void routinesChanged(RoutineRepository.Change change, Routine routine) {
+        switch (change) {
+            case ADDED, UPDATED -> {
+                removeRoutine(routine.getId());
+                addRoutine(routine);
+            }
+            case REMOVED -> removeRoutine(routine.getId());
+            case RELOADED -> reindexRoutines();
+        }
+    }
+
+    private synchronized void reindexRoutines() {
+        routineTerms.clear();
+        termsByRoutine.clear();
+        for (Routine routine : repository.getAll()) {
+            addRoutine(routine);
+        }
+    }
+
+    private void addRoutine(Routine routine) {
+        Set<String> terms = new HashSet<>();
+        tokenize(routine.getName(), terms);
+        for (Exercise exercise : routine.getExercises()) {
+            tokenize(exercise.getName(), terms);
+        }
+        for (String term : terms) {
+            routineTerms.computeIfAbsent(term, k -> new HashSet<>()).add(routine.getId());
+        }
+        termsByRoutine.put(routine.getId(), terms);
+    }
+
+    private void removeRoutine(long id) {
+        Set<String> terms = termsByRoutine.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Set<Long> ids = routineTerms.get(term);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                routineTerms.remove(term);
+            }
+        }
+    }
+
+    // Indexes the history records appended since the last call; starts over
+    // when the history has been cleared
+    public synchronized void syncHistory() {
+        int size = history.size();
+        if (history.getGeneration() != historyGeneration || size < indexedRecords) {
+            historyGeneration = history.getGeneration();
+            indexedRecords = 0;
+        }
+        if (size > recordNames.length) {
+            int capacity = Math.max(size, recordNames.length * 2);
+            recordNames = Arrays.copyOf(recordNames, capacity);
+            recordDays = Arrays.copyOf(recordDays, capacity);
+        }
+        for (int i = indexedRecords; i < size; i++) {
+            HistoryRecord record = history.get(i);
+            int nameId = record.getRoutineId();
+            if (indexedHistoryNames.add(nameId)) {
+                Set<String> terms = new HashSet<>();
+                tokenize(record.getRoutineName(), terms);
+                for (String term : terms) {
+                    historyTerms.computeIfAbsent(term, k -> new HashSet<>()).add(nameId);
+                }
+            }
+            // Records come in time order, so the day only changes every few records
+            long timestamp = record.getTimestamp();
+            if (timestamp < dayStart || timestamp >= dayEnd) {
+                LocalDate date = LocalDate.ofInstant(Instant.ofEpochSecond(timestamp), zone);
+                dayStart = date.atStartOfDay(zone).toEpochSecond();
+                dayEnd = date.plusDays(1).atStartOfDay(zone).toEpochSecond();
+                day = (int) date.toEpochDay();
+                dayTerms.putIfAbsent(date.toString(), day);
+            }
+            recordNames[i] = nameId;
+            recordDays[i] = day;
+        }
+        indexedRecords = size;
+    }
+
+    // Routines whose name or exercises match every word of the query, in
+    // repository order, at most limit of them
+    public synchronized List<Routine> searchRoutines(String query, int limit) {
+        List<Routine> results = new ArrayList<>();
+        Set<Long> matches = null;
+        for (String word : words(query)) {
+            for (String part : parts(word)) {
+                Set<Long> partMatches = new HashSet<>();
+                for (Set<Long> ids : prefixRange(routineTerms, part)) {
+                    partMatches.addAll(ids);
+                }
+                matches = matches == null ? partMatches : intersect(matches, partMatches);
+            }
+            if (matches != null && matches.isEmpty()) {
+                return results;
+            }
+        }
+        if (matches == null) {
+            return results;
+        }
+        for (Routine routine : repository.getAll()) {
+            if (results.size() == limit) {
+                break;
+            }
+            if (matches.contains(routine.getId())) {
+                results.add(routine);
+            }
+        }
+        return results;
+    }
+
+    // Store indices of the history records matching every word of the query by
+    // routine name or date (e.g. "2024-05"), newest first, at most limit of them
+    public synchronized int[] searchHistory(String query, int limit) {
+        syncHistory();
+        List<String> words = words(query);
+        if (words.isEmpty()) {
+            return new int[0];
+        }
+        // Per word, the routine names and days it matches
+        List<Set<Integer>> names = new ArrayList<>();
+        List<Set<Integer>> days = new ArrayList<>();
+        for (String word : words) {
+            Set<Integer> wordNames = null;
+            for (String part : parts(word)) {
+                Set<Integer> partNames = new HashSet<>();
+                for (Set<Integer> ids : prefixRange(historyTerms, part)) {
+                    partNames.addAll(ids);
+                }
+                wordNames = wordNames == null ? partNames : intersect(wordNames, partNames);
+            }
+            Set<Integer> wordDays = new HashSet<>(prefixRange(dayTerms, word));
+            if ((wordNames == null || wordNames.isEmpty()) && wordDays.isEmpty()) {
+                return new int[0];
+            }
+            names.add(wordNames == null ? Set.of() : wordNames);
+            days.add(wordDays);
+        }
+
+        int[] results = new int[Math.min(limit, indexedRecords)];
+        int count = 0;
+        for (int i = indexedRecords - 1; i >= 0 && count < results.length; i--) {
+            boolean match = true;
+            for (int w = 0; w < names.size() && match; w++) {
+                match = names.get(w).contains(recordNames[i]) || days.get(w).contains(recordDays[i]);
+            }
+            if (match) {
+                results[count++] = i;
+            }
+        }
+        return Arrays.copyOf(results, count);
+    }
+
+    private static <V> Collection<V> prefixRange(TreeMap<String, V> terms, String prefix) {
+        return terms.subMap(prefix, prefix + Character.MAX_VALUE).values();
+    }
+
+    private static <T> Set<T> intersect(Set<T> a, Set<T> b) {
+        Set<T> smaller = a.size() <= b.size() ? a : b;
+        Set<T> larger = smaller == a ? b : a;
+        Set<T> result = new HashSet<>();
+        for (T value : smaller) {
+            if (larger.contains(value)) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    // Query words are split on whitespace only, so a date like 2024-05 stays whole
+    private static List<String> words(String query) {
+        List<String> words = new ArrayList<>();
+        for (String word : WHITESPACE.split(query.toLowerCase(Locale.ROOT).trim())) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // The indexed terms a query word has to match, e.g. "push-pull" -> push, pull
+    private static List<String> parts(String word) {
+        List<String> parts = new ArrayList<>();
+        tokenize(word, parts);
+        return parts;
+    }
+
+    private static void tokenize(String text, Collection<String> terms) {
+        for (String term : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+    }
+}
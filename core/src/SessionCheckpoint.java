@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Checkpoint of the workout in progress, kept in a small fixed-size
+// memory-mapped file so the app can offer to resume after a crash. A save is
+// a few dozen bytes copied into the mapping plus a checksum, with no system
+// call, so it is cheap enough to run on the EDT every few seconds. The
+// mapping survives the process dying; the OS writes it back on its own.
+//
+// The file holds two slots written alternately, each with a sequence number
+// and a CRC32, so a save torn by a crash leaves the previous one readable.
+public class SessionCheckpoint {
+    static final int MAGIC = 0x46544350; // "FTCP"
+    static final short VERSION = 1;
+    static final int SLOT_SIZE = 2048;
+    static final int FILE_SIZE = 2 * SLOT_SIZE;
+    // Exercises past this many are not checkpointed
+    static final int MAX_EXERCISES = 250;
+    private static final int MAX_LOG_NAME = 200;
+    private static final int CRC_OFFSET = SLOT_SIZE - 4;
+
+    private final MappedByteBuffer map;
+    private final CRC32 crc = new CRC32();
+    private long sequence;
+
+    public SessionCheckpoint(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        }
+        for (int slot = 0; slot < 2; slot++) {
+            if (isValid(slot)) {
+                sequence = Math.max(sequence, map.getLong(slot * SLOT_SIZE + 8));
+            }
+        }
+    }
+
+    // Saves the live session. completedSets follows the routine's exercise order.
+    public synchronized void save(long routineId, Path sessionLog, long elapsedNanos, List<Exercise> exercises,
+            int[] completedSets) {
+        int base = nextSlot();
+        int position = writeHeader(base, true, routineId, elapsedNanos);
+        byte[] logName = sessionLog == null ? new byte[0]
+                : sessionLog.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+        int logLength = Math.min(logName.length, MAX_LOG_NAME);
+        map.putShort(position, (short) logLength);
+        position += 2;
+        for (int i = 0; i < logLength; i++) {
+            map.put(position++, logName[i]);
+        }
+        int count = Math.min(exercises.size(), MAX_EXERCISES);
+        map.putShort(position, (short) count);
+        position += 2;
+        for (int i = 0; i < count; i++) {
+            map.putInt(position, exercises.get(i).getName().hashCode());
+            map.putShort(position + 4, (short) completedSets[i]);
+            position += 6;
+        }
+        seal(base);
+    }
+
+    // Marks that no session is in progress
+    public synchronized void clear() {
+        int base = nextSlot();
+        writeHeader(base, false, 0, 0);
+        seal(base);
+    }
+
+    // The unfinished session, or null when the last session ended cleanly
+    public synchronized State load() {
+        int best = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            if (isValid(slot) && (best < 0
+                    || map.getLong(slot * SLOT_SIZE + 8) > map.getLong(best * SLOT_SIZE + 8))) {
+                best = slot;
+            }
+        }
+        if (best < 0 || map.get(best * SLOT_SIZE + 6) == 0) {
+            return null;
+        }
+
+        int base = best * SLOT_SIZE;
+        long routineId = map.getLong(base + 16);
+        long elapsedNanos = map.getLong(base + 24);
+        int position = base + 32;
+        int logLength = Short.toUnsignedInt(map.getShort(position));
+        position += 2;
+        byte[] logName = new byte[logLength];
+        for (int i = 0; i < logLength; i++) {
+            logName[i] = map.get(position++);
+        }
+        int count = Short.toUnsignedInt(map.getShort(position));
+        position += 2;
+        int[] nameHashes = new int[count];
+        int[] completedSets = new int[count];
+        for (int i = 0; i < count; i++) {
+            nameHashes[i] = map.getInt(position);
+            completedSets[i] = Short.toUnsignedInt(map.getShort(position + 4));
+            position += 6;
+        }
+        return new State(routineId, new String(logName, StandardCharsets.UTF_8), elapsedNanos, nameHashes,
+                completedSets);
+    }
+
+    // Slot layout: magic, version, active flag, padding, sequence, routine id,
+    // elapsed nanos, then the session fields, with the CRC32 in the last 4 bytes
+    private int writeHeader(int base, boolean active, long routineId, long elapsedNanos) {
+        map.putInt(base, 0); // invalid until sealed
+        map.putShort(base + 4, VERSION);
+        map.put(base + 6, (byte) (active ? 1 : 0));
+        map.put(base + 7, (byte) 0);
+        map.putLong(base + 8, ++sequence);
+        map.putLong(base + 16, routineId);
+        map.putLong(base + 24, elapsedNanos);
+        return base + 32;
+    }
+
+    private void seal(int base) {
+        map.putInt(base, MAGIC);
+        map.putInt(base + CRC_OFFSET, checksum(base));
+    }
+
+    private int nextSlot() {
+        return (int) ((sequence + 1) % 2) * SLOT_SIZE;
+    }
+
+    private boolean isValid(int slot) {
+        int base = slot * SLOT_SIZE;
+        return map.getInt(base) == MAGIC && map.getShort(base + 4) == VERSION
+                && map.getInt(base + CRC_OFFSET) == checksum(base);
+    }
+
+    private int checksum(int base) {
+        ByteBuffer slot = map.duplicate();
+        slot.position(base).limit(base + CRC_OFFSET);
+        crc.reset();
+        crc.update(slot);
+        return (int) crc.getValue();
+    }
+
+    // A checkpointed session
+    public static class State {
+        private final long routineId;
+        private final String sessionLogName;
+        private final long elapsedNanos;
+        private final int[] nameHashes;
+        private final int[] completedSets;
+
+        State(long routineId, String sessionLogName, long elapsedNanos, int[] nameHashes, int[] completedSets) {
+            this.routineId = routineId;
+            this.sessionLogName = sessionLogName;
+            this.elapsedNanos = elapsedNanos;
+            this.nameHashes = nameHashes;
+            this.completedSets = completedSets;
+        }
+
+        public long getRoutineId() {
+            return routineId;
+        }
+
+        // File name of the session log inside the sessions directory, may be empty
+        public String getSessionLogName() {
+            return sessionLogName;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        // Completed sets of the exercise at index, or 0 when the routine has
+        // changed since the checkpoint and the exercise no longer matches
+        public int getCompletedSets(int index, Exercise exercise) {
+            if (index >= completedSets.length || nameHashes[index] != exercise.getName().hashCode()) {
+                return 0;
+            }
+            return Math.min(completedSets[index], exercise.getSets());
+        }
+
+        @Override
+        public String toString() {
+            return "routine " + routineId + ", " + elapsedNanos / 1_000_000_000L + " s, sets "
+                    + Arrays.toString(completedSets);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.nio.ByteBuffer;
+
+// One entry of a workout session log: a set completed or undone, or the end
+// of the session. Stored as a fixed 16-byte record.
+public class SessionEvent {
+    public static final byte SET_COMPLETED = 1;
+    public static final byte SET_UNDONE = 2;
+    public static final byte SESSION_END = 3;
+
+    static final int SIZE = 16;
+
+    private final byte type;
+    private final int elapsedMillis;
+    private final int exerciseIndex;
+    private final int setNumber;
+    private final int reps;
+    private final int weightHundredths;
+
+    public SessionEvent(byte type, int elapsedMillis, int exerciseIndex, int setNumber, int reps,
+            int weightHundredths) {
+        this.type = type;
+        this.elapsedMillis = elapsedMillis;
+        this.exerciseIndex = exerciseIndex;
+        this.setNumber = setNumber;
+        this.reps = reps;
+        this.weightHundredths = weightHundredths;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    // Time since the session started, from the monotonic clock
+    public int getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    // Position of the exercise in the session header
+    public int getExerciseIndex() {
+        return exerciseIndex;
+    }
+
+    // 1-based number of the set completed or undone
+    public int getSetNumber() {
+        return setNumber;
+    }
+
+    public int getReps() {
+        return reps;
+    }
+
+    public double getWeight() {
+        return weightHundredths / 100.0;
+    }
+
+    // type, reserved, exercise index, set number, reps, elapsed millis, weight in hundredths
+    void writeTo(ByteBuffer buffer) {
+        buffer.put(type);
+        buffer.put((byte) 0);
+        buffer.putShort((short) exerciseIndex);
+        buffer.putShort((short) setNumber);
+        buffer.putShort((short) reps);
+        buffer.putInt(elapsedMillis);
+        buffer.putInt(weightHundredths);
+    }
+
+    static SessionEvent readFrom(ByteBuffer buffer) {
+        byte type = buffer.get();
+        buffer.get();
+        int exerciseIndex = Short.toUnsignedInt(buffer.getShort());
+        int setNumber = Short.toUnsignedInt(buffer.getShort());
+        int reps = Short.toUnsignedInt(buffer.getShort());
+        int elapsedMillis = buffer.getInt();
+        int weightHundredths = buffer.getInt();
+        return new SessionEvent(type, elapsedMillis, exerciseIndex, setNumber, reps, weightHundredths);
+    }
+}
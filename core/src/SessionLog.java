@@ -0,0 +1,429 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Binary log of every set completed or undone during one workout, one file
+// per session. Recording an event only copies 16 bytes into a memory buffer;
+// a background writer group-commits the buffer at most once per interval, and
+// right away when the session ends, as one checksummed batch and one fsync.
+// A torn batch at the end of the file is ignored when the log is read back,
+// and cut off before a resumed session appends to it.
+//
+// File layout: header (magic, version, start time, routine id and name, then
+// name, weight, reps and sets of each exercise), followed by batches of
+// [event count][CRC32 of the events][events].
+public class SessionLog {
+    static final int MAGIC = 0x46545345; // "FTSE"
+    static final short VERSION = 1;
+    private static final long COMMIT_INTERVAL_MILLIS = 1000;
+    private static final int BATCH_HEADER_SIZE = 8;
+
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-log-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Logs with uncommitted events, committed on exit if the writer has not got to them
+    private static final Set<SessionLog> openLogs = ConcurrentHashMap.newKeySet();
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (SessionLog log : openLogs) {
+                log.commit();
+            }
+        }, "session-log-shutdown"));
+    }
+
+    private final Path file;
+    private final long startNanos;
+    private final List<Exercise> exercises;
+    private ByteBuffer pending; // header (until the first commit) plus uncommitted events
+    private int pendingEvents;
+    private boolean commitScheduled;
+    private boolean closed;
+    private final Object commitLock = new Object(); // the writer and the shutdown hook may both commit
+    private FileChannel channel; // guarded by commitLock
+
+    private SessionLog(Path file, long startMillis, Routine routine) {
+        this.file = file;
+        this.startNanos = System.nanoTime();
+        this.exercises = new ArrayList<>(routine.getExercises());
+        this.pending = ByteBuffer.allocate(256 + exercises.size() * 64);
+        writeHeader(startMillis, routine);
+    }
+
+    // Appends to an existing log; event times continue from elapsedNanos
+    private SessionLog(Session session, long elapsedNanos) {
+        this.file = session.getFile();
+        this.startNanos = System.nanoTime() - elapsedNanos;
+        this.exercises = new ArrayList<>(session.getExercises());
+        this.pending = ByteBuffer.allocate(256);
+    }
+
+    // Starts the log for a new session. Nothing touches the disk until the first commit.
+    public static SessionLog start(String sessionsDir, Routine routine) {
+        long startMillis = System.currentTimeMillis();
+        Path file = Paths.get(sessionsDir, "session-" + startMillis + ".log");
+        SessionLog log = new SessionLog(file, startMillis, routine);
+        openLogs.add(log);
+        log.scheduleCommit(0);
+        return log;
+    }
+
+    // Continues the log of an interrupted session. Falls back to a new log
+    // when the old one is missing or unreadable.
+    public static SessionLog resume(String sessionsDir, String fileName, Routine routine, long elapsedNanos) {
+        if (!fileName.isEmpty()) {
+            try {
+                Session session = read(Paths.get(sessionsDir, fileName));
+                if (!session.isFinished()) {
+                    truncateTornTail(session);
+                    SessionLog log = new SessionLog(session, elapsedNanos);
+                    openLogs.add(log);
+                    return log;
+                }
+            } catch (IOException e) {
+                System.err.println("Warning: Could not resume session log " + fileName + ": " + e.getMessage());
+            }
+        }
+        return start(sessionsDir, routine);
+    }
+
+    // Batches appended after a torn one would never be read back
+    private static void truncateTornTail(Session session) throws IOException {
+        Path file = session.getFile();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long damaged = channel.size() - session.getValidLength();
+            if (damaged > 0) {
+                System.err.println("Discarding " + damaged + " damaged bytes from " + file);
+                channel.truncate(session.getValidLength());
+                channel.force(false);
+            }
+        }
+    }
+
+    // Listeners run on the writer thread after events reach the disk
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // setNumber is the 1-based number of the set just completed
+    public void setCompleted(Exercise exercise, int setNumber) {
+        record(SessionEvent.SET_COMPLETED, indexOf(exercise), setNumber);
+    }
+
+    // setNumber is the 1-based number of the set taken back
+    public void setUndone(Exercise exercise, int setNumber) {
+        record(SessionEvent.SET_UNDONE, indexOf(exercise), setNumber);
+    }
+
+    // Position in the header. An exercise replaced by editing the routine
+    // mid-session is matched by name; one added mid-session is not logged.
+    private int indexOf(Exercise exercise) {
+        for (int i = 0; i < exercises.size(); i++) {
+            if (exercises.get(i) == exercise) {
+                return i;
+            }
+        }
+        for (int i = 0; i < exercises.size(); i++) {
+            if (exercises.get(i).getName().equals(exercise.getName())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Records the end of the session and commits everything right away
+    public void finish() {
+        record(SessionEvent.SESSION_END, 0, 0);
+        close();
+    }
+
+    // Commits what is buffered and closes the log without ending the session
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        writer.execute(this::commit);
+    }
+
+    private void record(byte type, int exerciseIndex, int setNumber) {
+        if (exerciseIndex < 0) {
+            return;
+        }
+        int elapsedMillis = (int) Math.min(Integer.MAX_VALUE, (System.nanoTime() - startNanos) / 1_000_000L);
+        int reps = 0;
+        int weightHundredths = 0;
+        if (type != SessionEvent.SESSION_END) {
+            Exercise exercise = exercises.get(exerciseIndex);
+            reps = exercise.getReps();
+            weightHundredths = (int) Math.round(exercise.getWeight() * 100);
+        }
+        SessionEvent event = new SessionEvent(type, elapsedMillis, exerciseIndex, setNumber, reps, weightHundredths);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (pendingEvents == 0) {
+                reserve(BATCH_HEADER_SIZE);
+                pending.position(pending.position() + BATCH_HEADER_SIZE);
+            }
+            reserve(SessionEvent.SIZE);
+            event.writeTo(pending);
+            pendingEvents++;
+        }
+        scheduleCommit(COMMIT_INTERVAL_MILLIS);
+    }
+
+    private void scheduleCommit(long delayMillis) {
+        synchronized (this) {
+            if (commitScheduled) {
+                return;
+            }
+            commitScheduled = true;
+        }
+        writer.schedule(this::commit, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Writes the buffered header and events as one batch and forces them to disk
+    private void commit() {
+        synchronized (commitLock) {
+            commitPending();
+        }
+    }
+
+    private void commitPending() {
+        ByteBuffer batch;
+        int events;
+        boolean closing;
+        synchronized (this) {
+            commitScheduled = false;
+            batch = pending;
+            events = pendingEvents;
+            closing = closed;
+            pending = ByteBuffer.allocate(Math.max(256, batch.capacity()));
+            pendingEvents = 0;
+        }
+        try {
+            batch.flip();
+            if (events > 0) {
+                // Fill in the batch header in front of the events
+                int eventsStart = batch.limit() - events * SessionEvent.SIZE;
+                CRC32 crc = new CRC32();
+                crc.update(batch.array(), eventsStart, events * SessionEvent.SIZE);
+                batch.putInt(eventsStart - BATCH_HEADER_SIZE, events);
+                batch.putInt(eventsStart - BATCH_HEADER_SIZE + 4, (int) crc.getValue());
+            }
+            if (batch.hasRemaining()) {
+                if (channel == null) {
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+                }
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                if (events > 0) {
+                    for (Listener listener : listeners) {
+                        listener.sessionLogged(file);
+                    }
+                }
+            }
+            if (closing && channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Could not write session log " + file + ": " + e.getMessage());
+        } finally {
+            if (closing) {
+                openLogs.remove(this);
+            }
+        }
+    }
+
+    private void writeHeader(long startMillis, Routine routine) {
+        reserve(24);
+        pending.putInt(MAGIC);
+        pending.putShort(VERSION);
+        pending.putLong(startMillis);
+        pending.putLong(routine.getId());
+        putString(routine.getName());
+        reserve(2);
+        pending.putShort((short) exercises.size());
+        for (Exercise exercise : exercises) {
+            putString(exercise.getName());
+            reserve(8);
+            pending.putInt((int) Math.round(exercise.getWeight() * 100));
+            pending.putShort((short) exercise.getReps());
+            pending.putShort((short) exercise.getSets());
+        }
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        reserve(2 + length);
+        pending.putShort((short) length);
+        pending.put(bytes, 0, length);
+    }
+
+    private void reserve(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    // Reads a session log back, stopping at the first incomplete or corrupt batch
+    public static Session read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a session log");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            long startMillis = buffer.getLong();
+            long routineId = buffer.getLong();
+            String routineName = getString(buffer);
+            int exerciseCount = Short.toUnsignedInt(buffer.getShort());
+            List<Exercise> exercises = new ArrayList<>(exerciseCount);
+            for (int i = 0; i < exerciseCount; i++) {
+                String name = getString(buffer);
+                double weight = buffer.getInt() / 100.0;
+                int reps = Short.toUnsignedInt(buffer.getShort());
+                int sets = Short.toUnsignedInt(buffer.getShort());
+                exercises.add(new Exercise(name, weight, reps, sets));
+            }
+            List<SessionEvent> events = new ArrayList<>();
+            long validLength = readBatches(buffer, events);
+            return new Session(file, startMillis, routineId, routineName, exercises, events, validLength);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " has an incomplete header");
+        }
+    }
+
+    // Adds the events of every intact batch; returns the offset just past the last one
+    private static long readBatches(ByteBuffer buffer, List<SessionEvent> events) {
+        long valid = buffer.position();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= BATCH_HEADER_SIZE) {
+            int count = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+            if (count <= 0 || (long) count * SessionEvent.SIZE > buffer.remaining()) {
+                break; // torn write
+            }
+            int length = count * SessionEvent.SIZE;
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                events.add(SessionEvent.readFrom(buffer));
+            }
+            valid = buffer.position();
+        }
+        return valid;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    public interface Listener {
+        void sessionLogged(Path file);
+    }
+
+    // A session as read back from its log
+    public static class Session {
+        private final Path file;
+        private final long startMillis;
+        private final long routineId;
+        private final String routineName;
+        private final List<Exercise> exercises;
+        private final List<SessionEvent> events;
+        private final long validLength;
+
+        Session(Path file, long startMillis, long routineId, String routineName, List<Exercise> exercises,
+                List<SessionEvent> events, long validLength) {
+            this.file = file;
+            this.startMillis = startMillis;
+            this.routineId = routineId;
+            this.routineName = routineName;
+            this.exercises = Collections.unmodifiableList(exercises);
+            this.events = Collections.unmodifiableList(events);
+            this.validLength = validLength;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getRoutineId() {
+            return routineId;
+        }
+
+        public String getRoutineName() {
+            return routineName;
+        }
+
+        // Exercises as planned when the session started, in event index order
+        public List<Exercise> getExercises() {
+            return exercises;
+        }
+
+        public List<SessionEvent> getEvents() {
+            return events;
+        }
+
+        // Bytes up to the end of the last intact batch
+        public long getValidLength() {
+            return validLength;
+        }
+
+        public boolean isFinished() {
+            return !events.isEmpty() && events.get(events.size() - 1).getType() == SessionEvent.SESSION_END;
+        }
+    }
+}
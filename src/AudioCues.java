@@ -0,0 +1,236 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// Short sound cues such as the set and rest-timer bell. Each cue is decoded
+// to PCM once, and a fixed pool of voices keeps their lines open and started,
+// so playing a cue is only a hand-off to an idle voice thread. Overlapping
+// cues play on separate voices; when every voice is busy the cue is dropped
+// rather than played late. The pool never grows, so long sessions cannot run
+// out of mixer lines.
+public class AudioCues {
+    private static final int VOICES = 4;
+    // Small line buffers keep the time between play() and sound low
+    private static final int LINE_BUFFER_MILLIS = 40;
+    // Latency from play() until the cue's first samples reach the line
+    private static final Metrics.Timer LATENCY_TIMER = Metrics.getInstance().timer("audio.latency");
+    private static final Metrics.Counter DROPPED = Metrics.getInstance().counter("audio.dropped");
+    // Sound I/O that should never happen on the EDT
+    private static final Metrics.Timer DECODE_TIMER = Metrics.getInstance().timer("audio.decode");
+    private static final Metrics.Timer OPEN_TIMER = Metrics.getInstance().timer("audio.openLine");
+
+    private static AudioCues instance;
+
+    private final Map<String, Cue> cues = new ConcurrentHashMap<>();
+    // Cues that play() found missing and that are being decoded in the background
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "audio-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Voice[] voices = new Voice[VOICES];
+    private volatile boolean audioAvailable = true;
+
+    private AudioCues() {
+        for (int i = 0; i < VOICES; i++) {
+            voices[i] = new Voice(i);
+        }
+    }
+
+    public static synchronized AudioCues getInstance() {
+        if (instance == null) {
+            instance = new AudioCues();
+        }
+        return instance;
+    }
+
+    // Decodes the cues and opens the voice lines ahead of the first play()
+    public void preload(String... paths) {
+        Cue first = null;
+        for (String path : paths) {
+            Cue cue = getCue(path);
+            if (first == null) {
+                first = cue;
+            }
+        }
+        if (first != null) {
+            for (Voice voice : voices) {
+                voice.open(first.format);
+            }
+        }
+    }
+
+    // Starts the cue on an idle voice and returns right away. Returns false
+    // when audio is unavailable or every voice is busy, and when the cue was
+    // not preloaded: it is then decoded in the background for the next play.
+    public boolean play(String path) {
+        if (!audioAvailable) {
+            return false;
+        }
+        Cue cue = cues.get(path);
+        if (cue == null) {
+            // play() runs on the EDT for buttons and timers, so it never decodes
+            if (loading.add(path)) {
+                loader.execute(() -> {
+                    getCue(path);
+                    loading.remove(path);
+                });
+            }
+            DROPPED.increment();
+            return false;
+        }
+        PlayRequest request = new PlayRequest(cue, System.nanoTime());
+        for (Voice voice : voices) {
+            // Only succeeds when the voice thread is waiting for work
+            if (voice.requests.offer(request)) {
+                return true;
+            }
+        }
+        DROPPED.increment();
+        return false;
+    }
+
+    private Cue getCue(String path) {
+        Cue cue = cues.get(path);
+        if (cue == null) {
+            cue = decode(path);
+            if (cue != null) {
+                cues.putIfAbsent(path, cue);
+            }
+        }
+        return cue;
+    }
+
+    private static Cue decode(String path) {
+        return DECODE_TIMER.time(() -> readCue(path));
+    }
+
+    // Reads the whole file as signed PCM so voices only copy bytes to the line
+    private static Cue readCue(String path) {
+        try (AudioInputStream encoded = AudioSystem.getAudioInputStream(new File(path))) {
+            AudioFormat source = encoded.getFormat();
+            AudioFormat pcm = source;
+            AudioInputStream stream = encoded;
+            if (source.getEncoding() != AudioFormat.Encoding.PCM_SIGNED
+                    && source.getEncoding() != AudioFormat.Encoding.PCM_UNSIGNED) {
+                pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, source.getSampleRate(), 16,
+                        source.getChannels(), source.getChannels() * 2, source.getSampleRate(), false);
+                stream = AudioSystem.getAudioInputStream(pcm, encoded);
+            }
+            try (AudioInputStream decoded = stream) {
+                return new Cue(pcm, decoded.readAllBytes());
+            }
+        } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            System.err.println("Warning: Could not load sound " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void audioUnavailable(Exception e) {
+        if (audioAvailable) {
+            audioAvailable = false;
+            System.err.println("Warning: Sound output unavailable: " + e.getMessage());
+        }
+    }
+
+    private static class Cue {
+        final AudioFormat format;
+        final byte[] pcm;
+
+        Cue(AudioFormat format, byte[] pcm) {
+            this.format = format;
+            this.pcm = pcm;
+        }
+    }
+
+    private static class PlayRequest {
+        final Cue cue;
+        final long requestedAt;
+
+        PlayRequest(Cue cue, long requestedAt) {
+            this.cue = cue;
+            this.requestedAt = requestedAt;
+        }
+    }
+
+    // One daemon thread with its own line, opened once and kept started
+    private class Voice implements Runnable {
+        final SynchronousQueue<PlayRequest> requests = new SynchronousQueue<>();
+        private SourceDataLine line;
+
+        Voice(int index) {
+            Thread thread = new Thread(this, "audio-voice-" + index);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.start();
+        }
+
+        // Reopens the line only when a cue needs a different format
+        synchronized boolean open(AudioFormat format) {
+            if (line != null && line.getFormat().matches(format)) {
+                return true;
+            }
+            if (line != null) {
+                line.close();
+                line = null;
+            }
+            try {
+                line = OPEN_TIMER.time(() -> {
+                    SourceDataLine opened = AudioSystem.getSourceDataLine(format);
+                    int frames = Math.max(1, (int) (format.getFrameRate() * LINE_BUFFER_MILLIS / 1000));
+                    opened.open(format, frames * format.getFrameSize());
+                    opened.start();
+                    return opened;
+                });
+                return true;
+            } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+                audioUnavailable(e);
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                PlayRequest request;
+                try {
+                    request = requests.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                play(request);
+            }
+        }
+
+        private synchronized void play(PlayRequest request) {
+            Cue cue = request.cue;
+            if (!open(cue.format)) {
+                return;
+            }
+            int frameSize = cue.format.getFrameSize();
+            int chunk = Math.max(frameSize, line.getBufferSize() / 2 / frameSize * frameSize);
+            boolean first = true;
+            for (int offset = 0; offset < cue.pcm.length; offset += chunk) {
+                line.write(cue.pcm, offset, Math.min(chunk, cue.pcm.length - offset));
+                if (first) {
+                    LATENCY_TIMER.record(System.nanoTime() - request.requestedAt);
+                    first = false;
+                }
+            }
+            // Stay busy until the cue has played so the next one starts on an empty line
+            line.drain();
+        }
+    }
+}
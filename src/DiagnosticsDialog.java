@@ -0,0 +1,125 @@
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+// Hidden window with live figures from the metrics registry, opened with
+// Ctrl+Shift+D from any window. Refreshes once a second while it is open.
+class DiagnosticsDialog extends JDialog {
+    private static final int REFRESH_MILLIS = 1000;
+    private static final String[] COLUMNS = { "Metric", "Count", "p50 ms", "p99 ms", "Max ms", "Mean ms" };
+
+    private static DiagnosticsDialog instance;
+
+    private final MetricsTableModel tableModel = new MetricsTableModel();
+    private final JLabel memoryLabel = new JLabel();
+    private final TickService.Listener refresher = now -> refresh();
+
+    private DiagnosticsDialog(Window owner) {
+        super(owner, "Diagnostics", ModalityType.MODELESS);
+        JTable table = new JTable(tableModel);
+        table.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        table.getColumnModel().getColumn(0).setPreferredWidth(200);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            Metrics.getInstance().reset();
+            refresh();
+        });
+        JPanel footer = new JPanel(new BorderLayout(10, 0));
+        footer.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        footer.add(memoryLabel, BorderLayout.CENTER);
+        footer.add(resetButton, BorderLayout.EAST);
+
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(footer, BorderLayout.SOUTH);
+        setSize(640, 420);
+        setLocationRelativeTo(owner);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                TickService.getInstance().removeListener(refresher);
+                instance = null;
+            }
+        });
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    // Opens the dialog on Ctrl+Shift+D in any window of the app
+    static void installShortcut() {
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(e -> {
+            if (e.getID() == KeyEvent.KEY_PRESSED && e.getKeyCode() == KeyEvent.VK_D
+                    && e.isControlDown() && e.isShiftDown()) {
+                showFor(KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    static void showFor(Window owner) {
+        if (instance == null) {
+            instance = new DiagnosticsDialog(owner);
+            instance.refresh();
+            TickService.getInstance().addListener(instance.refresher, REFRESH_MILLIS);
+        }
+        instance.setVisible(true);
+        instance.toFront();
+    }
+
+    private void refresh() {
+        tableModel.update();
+        Runtime runtime = Runtime.getRuntime();
+        long usedMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        memoryLabel.setText("Heap " + usedMb + " / " + runtime.maxMemory() / (1024 * 1024) + " MB, "
+                + Thread.activeCount() + " threads");
+    }
+
+    private static class MetricsTableModel extends AbstractTableModel {
+        private List<Object[]> rows = new ArrayList<>();
+
+        void update() {
+            List<Object[]> updated = new ArrayList<>();
+            for (Metrics.Timer timer : Metrics.getInstance().getTimers()) {
+                updated.add(new Object[] { timer.getName(), timer.getCount(),
+                        millis(timer.getPercentileMillis(0.50)), millis(timer.getPercentileMillis(0.99)),
+                        millis(timer.getMaxMillis()), millis(timer.getMeanMillis()) });
+            }
+            for (Metrics.Counter counter : Metrics.getInstance().getCounters()) {
+                updated.add(new Object[] { counter.getName(), counter.get(), "", "", "", "" });
+            }
+            rows = updated;
+            fireTableDataChanged();
+        }
+
+        private static String millis(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+}
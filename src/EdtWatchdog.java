@@ -0,0 +1,259 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.SwingUtilities;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+// Watches the event dispatch thread. Every event is timed through a thin
+// EventQueue subclass, a heartbeat measures how long a posted runnable waits
+// to run, and a monitor thread prints the EDT's stack when one event has
+// been dispatching for longer than the stall threshold.
+//
+// In development mode (-Dfittrack.dev=true) it also flags file and sound I/O
+// done on the EDT, from the JDK's file events and the app's own timed
+// operations, and prints a summary of every offending call site at exit.
+// -Dfittrack.edtStallMillis changes the stall threshold.
+public class EdtWatchdog {
+    private static final long STALL_NANOS = Integer.getInteger("fittrack.edtStallMillis", 200) * 1_000_000L;
+    private static final long CHECK_MILLIS = 50;
+    private static final long HEARTBEAT_MILLIS = 250;
+    private static final int STACK_DEPTH = 20;
+    private static final String[] FILE_EVENTS = { "jdk.FileRead", "jdk.FileWrite", "jdk.FileForce" };
+    // Timed operations from Metrics that touch the disk or the sound system
+    private static final String[] IO_OPERATIONS = { "routines.", "history.", "sessions.", "audio.decode",
+            "audio.openLine" };
+
+    private static final Metrics.Timer DISPATCH_TIMER = Metrics.getInstance().timer("edt.dispatch");
+    private static final Metrics.Timer LATENCY_TIMER = Metrics.getInstance().timer("edt.latency");
+    private static final Metrics.Counter STALLS = Metrics.getInstance().counter("edt.stalls");
+    private static final Metrics.Counter IO_CALLS = Metrics.getInstance().counter("edt.io");
+
+    private static EdtWatchdog instance;
+
+    // Written by the EDT, read by the monitor thread
+    private volatile long dispatchStart; // 0 when the EDT is idle
+    private volatile AWTEvent dispatching;
+    private volatile Thread edt;
+    private int dispatchCount; // EDT only
+    private int depth; // EDT only; more than 1 inside a modal dialog
+
+    private final Map<String, IoSite> ioSites = new ConcurrentHashMap<>();
+
+    private EdtWatchdog() {
+    }
+
+    public static synchronized EdtWatchdog getInstance() {
+        if (instance == null) {
+            instance = new EdtWatchdog();
+        }
+        return instance;
+    }
+
+    public static boolean isDevMode() {
+        return Boolean.getBoolean("fittrack.dev");
+    }
+
+    // Must be called on the EDT, once, before the first window opens
+    public void install() {
+        edt = Thread.currentThread();
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+
+        Thread monitor = new Thread(this::monitor, "edt-watchdog");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    // A modal dialog pumps events inside the event that opened it. While the
+    // nested pump waits for input the EDT is idle, so the outer event only
+    // counts as dispatching again once the pump returns to it.
+    private class TimedEventQueue extends EventQueue {
+        @Override
+        public AWTEvent getNextEvent() throws InterruptedException {
+            dispatchStart = 0;
+            return super.getNextEvent();
+        }
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            long start = System.nanoTime();
+            AWTEvent outerEvent = dispatching;
+            int before = dispatchCount++;
+            depth++;
+            edt = Thread.currentThread();
+            dispatching = event;
+            dispatchStart = start;
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                // An event that pumped others spent most of its time idle, so
+                // it is not timed
+                boolean pumped = dispatchCount != before + 1;
+                depth--;
+                dispatching = outerEvent;
+                // Back in the outer event, unless the pump waits for the next one
+                dispatchStart = depth == 0 ? 0 : System.nanoTime();
+                if (!pumped) {
+                    DISPATCH_TIMER.record(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    private void monitor() {
+        // Starting the event stream takes a while, so it is done here rather than on the EDT
+        if (isDevMode()) {
+            watchIo();
+        }
+        long reportedStart = 0;
+        long lastHeartbeat = 0;
+        while (true) {
+            try {
+                Thread.sleep(CHECK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            long start = dispatchStart;
+            if (start != 0 && start != reportedStart && now - start > STALL_NANOS) {
+                reportedStart = start;
+                reportStall(now - start);
+            }
+            if (now - lastHeartbeat >= HEARTBEAT_MILLIS * 1_000_000L) {
+                lastHeartbeat = now;
+                long posted = System.nanoTime();
+                SwingUtilities.invokeLater(() -> LATENCY_TIMER.record(System.nanoTime() - posted));
+            }
+        }
+    }
+
+    private void reportStall(long blockedNanos) {
+        STALLS.increment();
+        Thread thread = edt;
+        AWTEvent event = dispatching;
+        StringBuilder report = new StringBuilder("Warning: EDT blocked for over ")
+                .append(blockedNanos / 1_000_000).append(" ms");
+        if (event != null) {
+            report.append(" dispatching ").append(event.getClass().getSimpleName())
+                    .append(" from ").append(event.getSource().getClass().getSimpleName());
+        }
+        if (thread != null) {
+            StackTraceElement[] stack = thread.getStackTrace();
+            for (int i = 0; i < Math.min(STACK_DEPTH, stack.length); i++) {
+                report.append("\n    at ").append(stack[i]);
+            }
+        }
+        System.err.println(report);
+    }
+
+    // Development mode
+
+    private void watchIo() {
+        RecordingStream stream = new RecordingStream();
+        for (String type : FILE_EVENTS) {
+            stream.enable(type).withThreshold(Duration.ZERO).withStackTrace();
+        }
+        stream.enable("fittrack.Operation").withThreshold(Duration.ZERO).withStackTrace();
+        stream.onEvent(this::checkIo);
+        stream.setReuse(false);
+        stream.startAsync();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stream.close();
+            printIoReport();
+        }, "edt-io-report"));
+    }
+
+    private void checkIo(RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        if (thread == null || thread.getJavaThreadId() != edtId()) {
+            return;
+        }
+        String kind;
+        if (event.getEventType().getName().equals("fittrack.Operation")) {
+            String operation = event.getString("operation");
+            if (!isIoOperation(operation)) {
+                return;
+            }
+            kind = operation;
+        } else {
+            String path = event.getString("path");
+            if (path != null && (path.endsWith(".class") || path.endsWith(".jar"))) {
+                return; // class loading
+            }
+            kind = event.getEventType().getLabel() + " " + path;
+        }
+
+        IO_CALLS.increment();
+        String site = callSite(event);
+        IoSite stats = ioSites.computeIfAbsent(kind + " at " + site, key -> new IoSite());
+        if (stats.record(event.getDuration().toNanos())) {
+            System.err.println("Warning: " + kind + " on the EDT at " + site + " ("
+                    + event.getDuration().toMillis() + " ms)");
+        }
+    }
+
+    private long edtId() {
+        Thread thread = edt;
+        return thread == null ? -1 : thread.getId();
+    }
+
+    private static boolean isIoOperation(String operation) {
+        for (String prefix : IO_OPERATIONS) {
+            if (operation != null && operation.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The innermost frame in app code; JDK frames only say which stream it was
+    private static String callSite(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("javax.") && !type.startsWith("jdk.")
+                    && !type.startsWith("sun.") && !type.startsWith("com.sun.") && !type.startsWith("Metrics$")
+                    && !type.equals("OperationEvent")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "unknown";
+    }
+
+    private void printIoReport() {
+        if (ioSites.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, IoSite>> sites = new ArrayList<>(ioSites.entrySet());
+        sites.sort((a, b) -> Long.compare(b.getValue().totalNanos, a.getValue().totalNanos));
+        System.err.println("I/O on the EDT (" + IO_CALLS.get() + " calls):");
+        for (Map.Entry<String, IoSite> site : sites) {
+            IoSite stats = site.getValue();
+            System.err.printf("  %5d calls %8.1f ms total %7.1f ms max  %s%n", stats.count,
+                    stats.totalNanos / 1e6, stats.maxNanos / 1e6, site.getKey());
+        }
+    }
+
+    private static class IoSite {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        // Returns true the first time the site is seen
+        synchronized boolean record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            return count == 1;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Font;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.ListCellRenderer;
+
+// Paints a history entry card. A single instance is reused for every row, so
+// the list never holds more than this one set of components.
+public class HistoryCellRenderer extends JPanel implements ListCellRenderer<HistoryRecord> {
+    private static final Color ENTRY_COLOR = new Color(252, 252, 252);
+    private static final Color PRIMARY_COLOR = new Color(70, 130, 180);
+    private static final Color TEXT_SECONDARY = new Color(100, 100, 100);
+
+    private final JLabel nameLabel = new JLabel();
+    private final JLabel dateLabel = new JLabel();
+    private final JLabel durationLabel = new JLabel();
+    private final JLabel exerciseLabel = new JLabel();
+
+    public HistoryCellRenderer() {
+        setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        setBackground(ENTRY_COLOR);
+        // Outer empty border keeps the 10px gap between cards
+        setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createEmptyBorder(5, 0, 5, 0),
+                BorderFactory.createCompoundBorder(
+                        RoundedBorder.of(8, new Color(220, 220, 220)),
+                        BorderFactory.createEmptyBorder(10, 10, 10, 10))));
+
+        // Workout name with special styling
+        JPanel namePanel = new JPanel();
+        namePanel.setBackground(PRIMARY_COLOR);
+        namePanel.setBorder(RoundedBorder.of(4, PRIMARY_COLOR));
+        namePanel.setAlignmentX(LEFT_ALIGNMENT);
+        namePanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
+        nameLabel.setForeground(Color.WHITE);
+        nameLabel.setFont(new Font("Arial", Font.BOLD, 12));
+        namePanel.add(nameLabel);
+
+        dateLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        durationLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        durationLabel.setForeground(TEXT_SECONDARY);
+        exerciseLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        exerciseLabel.setForeground(TEXT_SECONDARY);
+
+        add(namePanel);
+        add(Box.createVerticalStrut(5));
+        add(dateLabel);
+        add(Box.createVerticalStrut(3));
+        add(durationLabel);
+        add(exerciseLabel);
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends HistoryRecord> list, HistoryRecord record,
+            int index, boolean isSelected, boolean cellHasFocus) {
+        nameLabel.setText("Workout: " + record.getRoutineName());
+        dateLabel.setText("Date: " + record.getFormattedDate());
+        durationLabel.setText("Duration: " + record.getFormattedDuration());
+        exerciseLabel.setText("Exercises: " + record.getExerciseCount());
+        return this;
+    }
+
+    // Every card has the same layout, so one sample row gives the height of all rows
+    public int getRowHeight() {
+        getListCellRendererComponent(null, new HistoryRecord(0, 0, 0, "Sample", 0), 0, false, false);
+        return getPreferredSize().height;
+    }
+}
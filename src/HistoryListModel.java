@@ -0,0 +1,150 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.AbstractListModel;
+
+// List model over the history store. Records are only read when the list asks
+// for a row, one page at a time, and only a handful of pages stay cached.
+// The model can be narrowed to a date range, which the store resolves to a
+// contiguous run of records through its day index, or to an explicit list
+// of records such as search results.
+public class HistoryListModel extends AbstractListModel<HistoryRecord> {
+    private static final int PAGE_SIZE = 128;
+    private static final int MAX_CACHED_PAGES = 8;
+
+    private final HistoryStore store;
+    private int size; // records consumed from the store so far
+    private int generation;
+    private long fromTimestamp = Long.MIN_VALUE; // range in epoch seconds, end exclusive
+    private long toTimestamp = Long.MAX_VALUE;
+    private int offset; // store index of the first record in the range
+    private int[] matches; // store indices shown instead of the range, or null
+
+    // Least recently used pages are dropped first
+    private final Map<Integer, HistoryRecord[]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, HistoryRecord[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    public HistoryListModel(HistoryStore store) {
+        this.store = store;
+        this.size = store.size();
+        this.generation = store.getGeneration();
+    }
+
+    public HistoryStore getStore() {
+        return store;
+    }
+
+    // Shows only the records in [from, to), in epoch seconds; Long.MIN_VALUE
+    // and Long.MAX_VALUE leave an end open
+    public void setRange(long from, long to) {
+        fromTimestamp = from;
+        toTimestamp = to;
+        reload();
+    }
+
+    // Shows exactly these store indices, in order; null goes back to the range
+    public void setMatches(int[] matches) {
+        this.matches = matches;
+        reload();
+    }
+
+    // Store index just past the last record in the range
+    private int rangeEnd() {
+        return toTimestamp == Long.MAX_VALUE ? store.size() : store.indexOf(toTimestamp);
+    }
+
+    // Total duration of the records in the range
+    public long getTotalDurationSeconds() {
+        if (matches != null) {
+            long total = 0;
+            for (int index : matches) {
+                total += store.get(index).getDurationSeconds();
+            }
+            return total;
+        }
+        return store.totalDurationSeconds(offset, offset + size);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public HistoryRecord getElementAt(int index) {
+        int pageIndex = index / PAGE_SIZE;
+        HistoryRecord[] page = pages.get(pageIndex);
+        if (page == null) {
+            page = loadPage(pageIndex);
+            pages.put(pageIndex, page);
+        }
+        return page[index % PAGE_SIZE];
+    }
+
+    private HistoryRecord[] loadPage(int pageIndex) {
+        int start = pageIndex * PAGE_SIZE;
+        int count = Math.min(PAGE_SIZE, size - start);
+        HistoryRecord[] page = new HistoryRecord[count];
+        for (int i = 0; i < count; i++) {
+            page[i] = store.get(storeIndex(start + i));
+        }
+        return page;
+    }
+
+    private int storeIndex(int row) {
+        return matches != null ? matches[row] : offset + row;
+    }
+
+    // Picks up only the records appended since the last refresh. Untouched pages
+    // stay cached and the list is told about the new rows alone.
+    public void refresh() {
+        if (matches != null) {
+            return; // the owner runs the search again
+        }
+        int newSize = rangeEnd() - offset;
+        if (store.getGeneration() != generation || newSize < size) {
+            reload();
+            return;
+        }
+        if (newSize == size) {
+            return;
+        }
+
+        int oldSize = size;
+        size = newSize;
+
+        // A cached page that was only partly filled gets the new tail appended
+        int lastPage = (oldSize - 1) / PAGE_SIZE;
+        HistoryRecord[] page = oldSize > 0 ? pages.get(lastPage) : null;
+        if (page != null && page.length < PAGE_SIZE) {
+            int start = lastPage * PAGE_SIZE;
+            int count = Math.min(PAGE_SIZE, size - start);
+            HistoryRecord[] grown = Arrays.copyOf(page, count);
+            for (int i = page.length; i < count; i++) {
+                grown[i] = store.get(offset + start + i);
+            }
+            pages.put(lastPage, grown);
+        }
+
+        fireIntervalAdded(this, oldSize, size - 1);
+    }
+
+    // Drops every cached page and picks up the current size of the store
+    public void reload() {
+        int oldSize = size;
+        pages.clear();
+        generation = store.getGeneration();
+        offset = fromTimestamp == Long.MIN_VALUE ? 0 : store.indexOf(fromTimestamp);
+        size = matches != null ? matches.length : Math.max(0, rangeEnd() - offset);
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (size > 0) {
+            fireIntervalAdded(this, 0, size - 1);
+        }
+    }
+}
@@ -3,16 +3,19 @@ import java.awt.event.*;
 import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.event.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 public class HomeScreen extends BaseScreen {
-    // private static final Path WORKOUT_FILE_PATH = Paths.get(System.getProperty("user.dir"), "config",
-    //         "workout_history.txt");
-    // private static final String WORKOUT_FILE = WORKOUT_FILE_PATH.toString();
-    private static final String WORKOUT_FILE = AppPaths.getInstance().getWorkoutHistoryPath();
-
     private static final Color PRIMARY_COLOR = new Color(70, 130, 180);
     private static final Color PRIMARY_DARK = new Color(60, 120, 170);
     private static final Color DANGER_COLOR = new Color(220, 53, 69);
@@ -21,21 +24,336 @@ public class HomeScreen extends BaseScreen {
     private static final Color CARD_COLOR = new Color(255, 255, 255);
     private static final Color TEXT_SECONDARY = new Color(100, 100, 100);
     private static final Color HISTORYHOVER = new Color(142, 22, 22);
+    private static final int TRASH_ICON_SIZE = 20;
+    // Search shows at most this many routine cards and history rows
+    private static final int MAX_ROUTINE_RESULTS = 100;
+    private static final int MAX_HISTORY_RESULTS = 500;
+    private static final String[] HISTORY_RANGES = { "All time", "Last 7 days", "Last 30 days", "This year",
+            "Last year" };
+    private static final String[] TRANSFER_KINDS = { "Workout history", "Routines" };
 
     private JPanel routinesPanel;
-    private JPanel historyPanel;
+    private JList<HistoryRecord> historyList;
+    private HistoryListModel historyModel;
     private JButton addRoutineButton;
-    private ArrayList<Routine> allRoutines;
+    private RoutineRepository repository;
     private JLabel textUserGreeting;
     private JButton clearHistoryButton;
+    private JComboBox<String> historyRangeBox;
+    private JLabel historySummaryLabel;
+    private JTextField searchField;
+    private JButton importButton;
+    private JButton exportButton;
+    private SearchIndex searchIndex;
+    private StartupPipeline startup;
+    private boolean firstPaintReported = false;
+    // The member whose routines and history are shown
+    private Profile profile;
+    private JComboBox<ProfileStore.Member> memberBox;
+    private JButton addMemberButton;
+    private boolean updatingMembers = false;
+    // The card of each routine while the panel lists all of them
+    private final Map<Long, JPanel> routineCards = new HashMap<>();
+    // Routine changes not shown yet, from any thread; guarded by itself
+    private final List<RoutineChange> pendingChanges = new ArrayList<>();
+    private boolean changesPosted = false;
+    // Keeps the cards in sync with every add, edit and delete. A burst of
+    // changes, e.g. from an import, is applied in one go on the EDT.
+    private final RoutineRepository.Listener routinesListener = (change, routine) -> {
+        synchronized (pendingChanges) {
+            pendingChanges.add(new RoutineChange(change, routine));
+            if (changesPosted) {
+                return;
+            }
+            changesPosted = true;
+        }
+        SwingUtilities.invokeLater(this::applyRoutineChanges);
+    };
 
-    public HomeScreen() {
+    public HomeScreen(StartupPipeline startup) {
         super("Workout Tracker - Home");
-        allRoutines = Routine.loadRoutines();
+        this.startup = startup;
         initializeComponents();
         setupLayout();
+        showLoadingState();
+        startLoading();
+    }
+
+    // Skeleton shown until the routines and history have loaded
+    private void showLoadingState() {
+        JLabel loadingLabel = new JLabel("Loading routines...");
+        loadingLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+        loadingLabel.setForeground(TEXT_SECONDARY);
+        routinesPanel.add(loadingLabel);
+        addRoutineButton.setEnabled(false);
+        clearHistoryButton.setEnabled(false);
+        historyRangeBox.setEnabled(false);
+        searchField.setEnabled(false);
+        importButton.setEnabled(false);
+        exportButton.setEnabled(false);
+        memberBox.setEnabled(false);
+        addMemberButton.setEnabled(false);
+    }
+
+    // Loads data and assets in the background and streams each part into the
+    // window as soon as it is ready
+    private void startLoading() {
+        CompletableFuture<AppPaths> paths = startup.stage("paths", AppPaths::getInstance);
+        CompletableFuture<Profile> member = startup.stage("members", paths, p -> {
+            try {
+                return ProfileStore.getInstance().getCurrent();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error opening member data: " + e.getMessage(), e);
+            }
+        });
+        CompletableFuture<RoutineRepository> routines = startup.stage("routines", member, m -> {
+            try {
+                return m.getRoutines();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error loading routines: " + e.getMessage(), e);
+            }
+        });
+        CompletableFuture<HistoryStore> history = startup.stage("history", member, m -> {
+            try {
+                return m.getHistory();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open workout history: " + e.getMessage(), e);
+            }
+        });
+        CompletableFuture<Void> icons = startup.stage("icons", paths, p -> {
+            ImageCache.preloadIcon(p.getTrashImage(), TRASH_ICON_SIZE, TRASH_ICON_SIZE);
+            ImageCache.preloadIcon(p.getPlayImage(), RestTimerDialog.ICON_SIZE, RestTimerDialog.ICON_SIZE);
+            ImageCache.preloadIcon(p.getPauseImage(), RestTimerDialog.ICON_SIZE, RestTimerDialog.ICON_SIZE);
+            return null;
+        });
+        CompletableFuture<Void> sounds = startup.stage("sounds", paths, p -> {
+            AudioCues.getInstance().preload(p.getBellSound());
+            return null;
+        });
+        CompletableFuture<SessionCheckpoint.State> unfinished = startup.stage("checkpoint",
+                member.thenCombine(routines, (m, r) -> m), HomeScreen::loadCheckpoint);
+        CompletableFuture<RoutineRepository> routinesAndHistory = routines.thenCombine(history, (r, h) -> r);
+        CompletableFuture<SearchIndex> search = startup.stage("search", member.thenCombine(routinesAndHistory,
+                (m, r) -> m), m -> {
+                    try {
+                        return m.getSearchIndex();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        CompletableFuture<Void> resources = startup.stage("resources", paths, p -> {
+            p.verifyResources();
+            return null;
+        });
+
+        member.thenAcceptAsync(loaded -> {
+            profile = loaded;
+            textUserGreeting.setText(greeting(loaded.getName()));
+            refreshMembers();
+        }, SwingUtilities::invokeLater);
+
+        routines.thenAcceptAsync(loaded -> {
+            showRoutines(loaded);
+            startup.mark("routines UI");
+        }, SwingUtilities::invokeLater);
+
+        history.thenAcceptAsync(store -> {
+            showHistory(store);
+            startup.mark("history UI");
+        }, SwingUtilities::invokeLater);
+
+        // Waits for the routine and history UI so the first search has models to fill
+        search.thenCombine(routinesAndHistory, (index, r) -> index)
+                .thenAcceptAsync(index -> {
+                    searchIndex = index;
+                    searchField.setEnabled(true);
+                    memberBox.setEnabled(true);
+                    addMemberButton.setEnabled(true);
+                    runSearch();
+                }, SwingUtilities::invokeLater)
+                .exceptionally(e -> {
+                    System.err.println("Warning: Search is unavailable: " + e.getMessage());
+                    return null;
+                });
+
+        CompletableFuture.allOf(routines, history, icons, sounds, resources, unfinished)
+                .whenCompleteAsync((done, error) -> {
+                    startup.mark("interactive");
+                    startup.finish();
+                    if (error == null && unfinished.join() != null) {
+                        offerResume(unfinished.join());
+                    }
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        Metrics.getInstance().counter("errors").increment();
+                        System.err.println("Error during startup: " + cause);
+                        JOptionPane.showMessageDialog(this,
+                                "Error during startup: " + cause.getMessage(),
+                                "Startup Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                }, SwingUtilities::invokeLater);
+    }
+
+    private void showRoutines(RoutineRepository loaded) {
+        if (repository != null) {
+            repository.removeListener(routinesListener);
+        }
+        repository = loaded;
+        repository.addListener(routinesListener);
+        addRoutineButton.setEnabled(true);
+        importButton.setEnabled(historyModel != null);
+        exportButton.setEnabled(historyModel != null);
         updateRoutinesPanel();
-        updateHistoryPanel();
+    }
+
+    private void showHistory(HistoryStore store) {
+        historyModel = new HistoryListModel(store);
+        historyList.setModel(historyModel);
+        clearHistoryButton.setEnabled(true);
+        historyRangeBox.setEnabled(true);
+        importButton.setEnabled(repository != null);
+        exportButton.setEnabled(repository != null);
+        applyHistoryRange();
+    }
+
+    private static SessionCheckpoint.State loadCheckpoint(Profile member) {
+        try {
+            return member.getCheckpoint().load();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not read session checkpoint: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Fills the member switcher, sorted by name, with the current member selected
+    private void refreshMembers() {
+        List<ProfileStore.Member> members = ProfileStore.getInstance().getMembers();
+        members.sort(Comparator.comparing(ProfileStore.Member::getName, String.CASE_INSENSITIVE_ORDER));
+        updatingMembers = true;
+        try {
+            DefaultComboBoxModel<ProfileStore.Member> model = new DefaultComboBoxModel<>();
+            model.addAll(members);
+            memberBox.setModel(model);
+            for (ProfileStore.Member member : members) {
+                if (member.getId().equals(profile.getId())) {
+                    memberBox.setSelectedItem(member);
+                }
+            }
+        } finally {
+            updatingMembers = false;
+        }
+    }
+
+    // Members who trained recently are still resident, so switching to them
+    // swaps the models without touching the disk; anyone else is loaded in
+    // the background first
+    private void switchMember(ProfileStore.Member member) {
+        if (profile == null || member.getId().equals(profile.getId())) {
+            return;
+        }
+        memberBox.setEnabled(false);
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return ProfileStore.getInstance().switchTo(member.getId());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenCompleteAsync((switched, error) -> {
+            memberBox.setEnabled(true);
+            Throwable cause = error != null && error.getCause() != null ? error.getCause() : error;
+            if (cause == null) {
+                try {
+                    showMember(switched);
+                } catch (IOException e) {
+                    cause = e;
+                }
+            }
+            if (cause != null) {
+                Metrics.getInstance().counter("errors").increment();
+                refreshMembers();
+                JOptionPane.showMessageDialog(this, "Error switching member: " + cause.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    private void showMember(Profile switched) throws IOException {
+        profile = switched;
+        textUserGreeting.setText(greeting(switched.getName()));
+        refreshMembers();
+        // The index goes first so the panels below search the new member's data
+        searchIndex = switched.getSearchIndex();
+        showRoutines(switched.getRoutines());
+        showHistory(switched.getHistory());
+        runSearch();
+
+        CompletableFuture.supplyAsync(() -> loadCheckpoint(switched)).thenAcceptAsync(state -> {
+            if (state != null && profile == switched) {
+                offerResume(state);
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    private void addMember() {
+        String name = JOptionPane.showInputDialog(this, "Name of the new member:", "New Member",
+                JOptionPane.PLAIN_MESSAGE);
+        if (name == null || name.isBlank()) {
+            return;
+        }
+        addMemberButton.setEnabled(false);
+        ProfileStore.getInstance().addMember(name).whenCompleteAsync((member, error) -> {
+            addMemberButton.setEnabled(true);
+            if (error != null) {
+                Metrics.getInstance().counter("errors").increment();
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                JOptionPane.showMessageDialog(this, "Error adding member: " + cause.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            refreshMembers();
+            switchMember(member);
+        }, SwingUtilities::invokeLater);
+    }
+
+    // Offers to continue a workout the app was closed or crashed in the middle of
+    private void offerResume(SessionCheckpoint.State state) {
+        Routine routine = repository.findById(state.getRoutineId());
+        if (routine == null) {
+            clearCheckpoint();
+            return;
+        }
+        int choice = JOptionPane.showConfirmDialog(this,
+                "Your \"" + routine.getName() + "\" workout was interrupted after "
+                        + HistoryRecord.formatDuration((int) (state.getElapsedNanos() / 1_000_000_000L))
+                        + ".\nDo you want to resume it?",
+                "Resume Workout",
+                JOptionPane.YES_NO_OPTION);
+        if (choice == JOptionPane.YES_OPTION) {
+            WorkoutScreen workoutScreen = new WorkoutScreen(routine, repository, profile);
+            workoutScreen.setHomeScreen(this);
+            workoutScreen.resume(state);
+            workoutScreen.setVisible(true);
+        } else {
+            clearCheckpoint();
+        }
+    }
+
+    private void clearCheckpoint() {
+        try {
+            profile.getCheckpoint().clear();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not clear session checkpoint: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!firstPaintReported) {
+            firstPaintReported = true;
+            startup.mark("first paint");
+        }
     }
 
     @Override
@@ -45,21 +363,70 @@ public class HomeScreen extends BaseScreen {
 
         // Initialize panels with custom backgrounds
         routinesPanel = createScrollablePanel();
-        historyPanel = createScrollablePanel();
+        historyList = createHistoryList();
 
         clearHistoryButton = clearHistory("Clear History", DANGER_COLOR); // Use a danger color to indicate
                                                                                 // caution
         clearHistoryButton.addActionListener(e -> clearHistory());
 
+        historyRangeBox = new JComboBox<>(HISTORY_RANGES);
+        historyRangeBox.setFont(new Font("Arial", Font.PLAIN, 12));
+        historyRangeBox.addActionListener(e -> applyHistoryRange());
+        // Results update on every keystroke; the index answers well within a frame
+        searchField = new JTextField(18);
+        searchField.setFont(new Font("Arial", Font.PLAIN, 14));
+        searchField.setToolTipText("Search routines, exercises and history (e.g. \"bench\" or \"2024-05\")");
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                runSearch();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                runSearch();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                runSearch();
+            }
+        });
+
+        importButton = new JButton("Import...");
+        importButton.addActionListener(e -> importData());
+        exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> exportData());
+
+        historySummaryLabel = new JLabel(" ");
+        historySummaryLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        historySummaryLabel.setForeground(TEXT_SECONDARY);
+
         // Create stylish Add Routine button
         addRoutineButton = createStyledButton("Add Routine", PRIMARY_COLOR);
 
         // Create modern greeting label
-        textUserGreeting = new JLabel("<html><div style='font-family: Arial; font-size: 24px; margin: 10px;'>" +
+        textUserGreeting = new JLabel(greeting("User"));
+
+        // Member switcher; the prototype spares the box measuring every member
+        memberBox = new JComboBox<>();
+        memberBox.setFont(new Font("Arial", Font.PLAIN, 12));
+        memberBox.setPrototypeDisplayValue(new ProfileStore.Member("", "Some Member Name Here"));
+        memberBox.setMaximumRowCount(15);
+        memberBox.addActionListener(e -> {
+            Object selected = memberBox.getSelectedItem();
+            if (!updatingMembers && selected instanceof ProfileStore.Member) {
+                switchMember((ProfileStore.Member) selected);
+            }
+        });
+        addMemberButton = new JButton("New Member...");
+        addMemberButton.addActionListener(e -> addMember());
+    }
+
+    private static String greeting(String name) {
+        String escaped = name.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+        return "<html><div style='font-family: Arial; font-size: 24px; margin: 10px;'>" +
                 "Welcome back, <span style='color: " + String.format("#%02x%02x%02x",
                         PRIMARY_COLOR.getRed(), PRIMARY_COLOR.getGreen(), PRIMARY_COLOR.getBlue())
                 +
-                "'>User</span>!</div></html>");
+                "'>" + escaped + "</span>!</div></html>";
     }
 
     private JPanel createScrollablePanel() {
@@ -69,6 +436,27 @@ public class HomeScreen extends BaseScreen {
         panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
         return panel;
     }
+    // Virtualized list: only the rows in view are ever rendered
+    private JList<HistoryRecord> createHistoryList() {
+        HistoryCellRenderer renderer = new HistoryCellRenderer();
+
+        // Stays empty until the startup pipeline has opened the history store
+        JList<HistoryRecord> list = new JList<>(new DefaultListModel<>());
+        list.setCellRenderer(renderer);
+        // Fixed cell sizes stop the list from measuring every row
+        list.setFixedCellHeight(renderer.getRowHeight());
+        list.setFixedCellWidth(100);
+        list.setBackground(BACKGROUND_COLOR);
+        list.setBorder(BorderFactory.createEmptyBorder(10, 15, 10, 15));
+        list.setSelectionModel(new DefaultListSelectionModel() {
+            @Override
+            public void setSelectionInterval(int index0, int index1) {
+                // History entries are read-only cards
+            }
+        });
+        return list;
+    }
+
     //Separate method for the history button changing color on hover hihihi
     private JButton clearHistory(String text, Color baseColor) {
         JButton button = new JButton(text);
@@ -76,7 +464,7 @@ public class HomeScreen extends BaseScreen {
         button.setBackground(baseColor);
         button.setForeground(Color.WHITE);
         button.setFocusPainted(false);
-        button.setBorder(new RoundedBorder(10, baseColor));
+        button.setBorder(RoundedBorder.of(10, baseColor));
         button.setPreferredSize(new Dimension(150, 40));
 
 
@@ -99,7 +487,7 @@ public class HomeScreen extends BaseScreen {
         button.setBackground(baseColor);
         button.setForeground(Color.WHITE);
         button.setFocusPainted(false);
-        button.setBorder(new RoundedBorder(10, baseColor));
+        button.setBorder(RoundedBorder.of(10, baseColor));
         button.setPreferredSize(new Dimension(150, 40));
 
         // Add hover effect
@@ -114,14 +502,8 @@ public class HomeScreen extends BaseScreen {
         });
 
         button.addActionListener(e -> {
-            RoutineScreen routineScreen = new RoutineScreen(allRoutines);
+            RoutineScreen routineScreen = new RoutineScreen(repository, profile);
             routineScreen.setVisible(true);
-            routineScreen.addWindowListener(new WindowAdapter() {
-                @Override
-                public void windowClosed(WindowEvent e) {
-                    updateRoutinesPanel();
-                }
-            });
         });
 
         return button;
@@ -144,13 +526,27 @@ public class HomeScreen extends BaseScreen {
             }
         };
         topPanel.setBorder(BorderFactory.createEmptyBorder(15, 20, 15, 20));
-        topPanel.add(textUserGreeting, BorderLayout.WEST);
+        JPanel memberPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        memberPanel.setOpaque(false);
+        memberPanel.add(new JLabel("Member: "));
+        memberPanel.add(memberBox);
+        memberPanel.add(addMemberButton);
+        JPanel greetingPanel = new JPanel(new BorderLayout());
+        greetingPanel.setOpaque(false);
+        greetingPanel.add(textUserGreeting, BorderLayout.CENTER);
+        greetingPanel.add(memberPanel, BorderLayout.SOUTH);
+        topPanel.add(greetingPanel, BorderLayout.WEST);
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 12));
+        searchPanel.setOpaque(false);
+        searchPanel.add(new JLabel("Search: "));
+        searchPanel.add(searchField);
+        topPanel.add(searchPanel, BorderLayout.CENTER);
         topPanel.add(addRoutineButton, BorderLayout.EAST);
 
         // Create split pane with custom divider
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
                 createScrollPane(routinesPanel, "My Routines"),
-                createScrollPane(historyPanel, "Workout History"));
+                createHistoryPane());
         splitPane.setResizeWeight(0.5);
         splitPane.setDividerSize(1);
         splitPane.setBorder(null);
@@ -160,17 +556,93 @@ public class HomeScreen extends BaseScreen {
     }
 
     private void clearHistory() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(WORKOUT_FILE))) {
-            // This will effectively overwrite the file with nothing, clearing the contents
-            writer.print(""); // Writing an empty string to clear the content
-            JOptionPane.showMessageDialog(this, "Workout history has been cleared.", "Success",
-                    JOptionPane.INFORMATION_MESSAGE);
-            updateHistoryPanel(); // Refresh the history panel after clearing the data
-        } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error clearing history: " + e.getMessage(), "Error",
-                    JOptionPane.ERROR_MESSAGE);
+        clearHistoryButton.setEnabled(false);
+        HistoryStore store = historyModel.getStore();
+        PersistenceService.getInstance().submit("history clear " + profile.getHistoryDir(), store::clear)
+                .whenCompleteAsync((done, error) -> {
+                    clearHistoryButton.setEnabled(true);
+                    updateHistoryPanel(); // Refresh the history panel after clearing the data
+                    if (error != null) {
+                        Metrics.getInstance().counter("errors").increment();
+                        JOptionPane.showMessageDialog(this, "Error clearing history: " + error.getMessage(),
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Workout history has been cleared.", "Success",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    }
+                }, SwingUtilities::invokeLater);
+    }
+
+    // Import and export run in the background behind a progress dialog
+    private int chooseTransferKind(String action) {
+        return JOptionPane.showOptionDialog(this, "What do you want to " + action + "?", "Data",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, TRANSFER_KINDS,
+                TRANSFER_KINDS[0]);
+    }
+
+    private JFileChooser createTransferChooser() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setAcceptAllFileFilterUsed(false);
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("JSON files", "json"));
+        return chooser;
+    }
+
+    private void exportData() {
+        int kind = chooseTransferKind("export");
+        if (kind < 0) {
+            return;
+        }
+        JFileChooser chooser = createTransferChooser();
+        chooser.setSelectedFile(new File(kind == 0 ? "fittrack-history.csv" : "fittrack-routines.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        if (!file.getFileName().toString().contains(".")) {
+            String extension = chooser.getFileFilter().getDescription().startsWith("JSON") ? ".json" : ".csv";
+            file = file.resolveSibling(file.getFileName() + extension);
+        }
+        Path target = file;
+        Profile member = profile;
+        TransferDialog.run(this, "Exporting " + TRANSFER_KINDS[kind].toLowerCase(),
+                (progress, cancelled) -> kind == 0
+                        ? member.getTransfer().exportHistory(target, progress, cancelled)
+                        : member.getTransfer().exportRoutines(target, progress, cancelled),
+                result -> {
+                    if (!result.isCancelled()) {
+                        JOptionPane.showMessageDialog(this, "Exported " + result.getTransferred()
+                                + (kind == 0 ? " workouts" : " routines") + " to " + target.getFileName() + ".",
+                                "Export", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                });
+    }
+
+    private void importData() {
+        int kind = chooseTransferKind("import");
+        if (kind < 0) {
+            return;
+        }
+        JFileChooser chooser = createTransferChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        Path file = chooser.getSelectedFile().toPath();
+        Profile member = profile;
+        TransferDialog.run(this, "Importing " + TRANSFER_KINDS[kind].toLowerCase(),
+                (progress, cancelled) -> kind == 0
+                        ? member.getTransfer().importHistory(file, progress, cancelled)
+                        : member.getTransfer().importRoutines(file, progress, cancelled),
+                result -> {
+                    // Routines refresh through the repository listener
+                    updateHistoryPanel();
+                    String what = kind == 0 ? " workouts" : " routines";
+                    String message = (result.isCancelled() ? "Import cancelled. " : "") + "Imported "
+                            + result.getTransferred() + what + ", skipped " + result.getDuplicates()
+                            + " already present" + (result.getMalformed() > 0
+                                    ? " and " + result.getMalformed() + " unreadable rows." : ".");
+                    JOptionPane.showMessageDialog(this, message, "Import", JOptionPane.INFORMATION_MESSAGE);
+                });
     }
 
     private JScrollPane createScrollPane(JPanel panel, String title) {
@@ -183,14 +655,6 @@ public class HomeScreen extends BaseScreen {
         titleLabel.setBorder(BorderFactory.createEmptyBorder(0, 15, 10, 0));
         containerPanel.add(titleLabel, BorderLayout.NORTH);
 
-        // Add clearHistoryButton
-        if (title.equals("Workout History")) {
-            JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-            buttonPanel.setOpaque(false);
-            buttonPanel.add(clearHistoryButton);
-            containerPanel.add(buttonPanel, BorderLayout.SOUTH);
-        }
-
         containerPanel.add(panel, BorderLayout.CENTER);
         JScrollPane scrollPane = new JScrollPane(containerPanel);
         scrollPane.setBorder(null);
@@ -198,11 +662,48 @@ public class HomeScreen extends BaseScreen {
         return scrollPane;
     }
 
+    private JPanel createHistoryPane() {
+        JPanel containerPanel = new JPanel(new BorderLayout());
+        containerPanel.setBackground(BACKGROUND_COLOR);
+
+        // Add title with the date range filter beside it
+        JLabel titleLabel = new JLabel("Workout History");
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 18));
+        JPanel titlePanel = new JPanel(new BorderLayout());
+        titlePanel.setOpaque(false);
+        titlePanel.setBorder(BorderFactory.createEmptyBorder(0, 15, 10, 15));
+        titlePanel.add(titleLabel, BorderLayout.WEST);
+        titlePanel.add(historyRangeBox, BorderLayout.EAST);
+        containerPanel.add(titlePanel, BorderLayout.NORTH);
+
+        // The list scrolls on its own so the viewport can tell it which rows are visible
+        JScrollPane scrollPane = new JScrollPane(historyList);
+        scrollPane.setBorder(null);
+        scrollPane.getViewport().setBackground(BACKGROUND_COLOR);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        containerPanel.add(scrollPane, BorderLayout.CENTER);
+
+        // Add the range summary and clearHistoryButton
+        JPanel buttonPanel = new JPanel(new BorderLayout());
+        buttonPanel.setOpaque(false);
+        buttonPanel.setBorder(BorderFactory.createEmptyBorder(5, 15, 5, 5));
+        buttonPanel.add(historySummaryLabel, BorderLayout.WEST);
+        JPanel historyButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        historyButtons.setOpaque(false);
+        historyButtons.add(importButton);
+        historyButtons.add(exportButton);
+        historyButtons.add(clearHistoryButton);
+        buttonPanel.add(historyButtons, BorderLayout.EAST);
+        containerPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        return containerPanel;
+    }
+
     private JPanel createRoutineCard(Routine routine) {
         JPanel card = new JPanel(new BorderLayout(10, 5));
         card.setBackground(CARD_COLOR);
         card.setBorder(BorderFactory.createCompoundBorder(
-                new RoundedBorder(12, new Color(230, 230, 235)),
+                RoundedBorder.of(12, new Color(230, 230, 235)),
                 BorderFactory.createEmptyBorder(15, 20, 15, 20)));
         card.setMaximumSize(new Dimension(Integer.MAX_VALUE, 90));
 
@@ -214,13 +715,11 @@ public class HomeScreen extends BaseScreen {
         JLabel nameLabel = new JLabel(name);
         nameLabel.setFont(new Font("Arial", Font.BOLD, 16));
 
-        // Load and scale trash icon
-        ImageIcon originalIcon = new ImageIcon(AppPaths.getInstance().getTrashImage());
-        Image scaledImage = originalIcon.getImage().getScaledInstance(20, 20, Image.SCALE_SMOOTH);
-        ImageIcon scaledIcon = new ImageIcon(scaledImage);
+        // Every card shares the cached trash icon
+        Icon trashIcon = ImageCache.getIcon(AppPaths.getInstance().getTrashImage(), TRASH_ICON_SIZE, TRASH_ICON_SIZE);
 
         // Create delete button
-        JButton deleteButton = new RoundedIconButton(scaledIcon);
+        JButton deleteButton = new RoundedIconButton(trashIcon);
         deleteButton.addActionListener(e -> handleDeleteRoutine(routine));
 
         // Create exercise count with icon
@@ -241,7 +740,7 @@ public class HomeScreen extends BaseScreen {
         card.addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
-                    WorkoutScreen workoutScreen = new WorkoutScreen(routine, allRoutines);
+                    WorkoutScreen workoutScreen = new WorkoutScreen(routine, repository, profile);
                     workoutScreen.setHomeScreen(HomeScreen.this);
                     workoutScreen.setVisible(true);
                 }
@@ -268,8 +767,13 @@ public class HomeScreen extends BaseScreen {
                 JOptionPane.WARNING_MESSAGE);
 
         if (result == JOptionPane.YES_OPTION) {
-            Routine.deleteRoutine(routine.getName(), allRoutines);
-            updateRoutinesPanel();
+            repository.delete(routine).whenCompleteAsync((done, error) -> {
+                if (error != null) {
+                    Metrics.getInstance().counter("errors").increment();
+                    JOptionPane.showMessageDialog(this, "Error deleting routine: " + error.getMessage(), "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }, SwingUtilities::invokeLater);
             updateHistoryPanel();
         }
     }
@@ -313,107 +817,149 @@ public class HomeScreen extends BaseScreen {
     }
 
     public void updateRoutinesPanel() {
-        routinesPanel.removeAll();
-        routinesPanel.add(Box.createVerticalStrut(10));
-
-        for (Routine routine : allRoutines) {
-            JPanel routineCard = createRoutineCard(routine);
-            routinesPanel.add(routineCard);
+        Metrics.getInstance().timer("ui.routinesPanel.rebuild").time(() -> {
+            // Everything changed so far is in the rebuilt panel
+            synchronized (pendingChanges) {
+                pendingChanges.clear();
+            }
+            routinesPanel.removeAll();
+            routineCards.clear();
             routinesPanel.add(Box.createVerticalStrut(10));
+
+            String query = searchQuery();
+            for (Routine routine : query.isEmpty() ? repository.getAll()
+                    : searchIndex.searchRoutines(query, MAX_ROUTINE_RESULTS)) {
+                JPanel routineCard = createRoutineCard(routine);
+                routinesPanel.add(routineCard);
+                routinesPanel.add(Box.createVerticalStrut(10));
+                if (query.isEmpty()) {
+                    routineCards.put(routine.getId(), routineCard);
+                }
+            }
+
+            routinesPanel.revalidate();
+            routinesPanel.repaint();
+        });
+    }
+
+    // Adds, replaces or removes only the cards of the routines that changed.
+    // A reload, or a search whose results may shift, rebuilds the panel.
+    private void applyRoutineChanges() {
+        List<RoutineChange> changes;
+        synchronized (pendingChanges) {
+            changes = new ArrayList<>(pendingChanges);
+            pendingChanges.clear();
+            changesPosted = false;
+        }
+        if (changes.isEmpty() || repository == null) {
+            return;
+        }
+        boolean rebuild = !searchQuery().isEmpty();
+        for (RoutineChange change : changes) {
+            rebuild |= change.change == RoutineRepository.Change.RELOADED;
         }
+        if (rebuild) {
+            updateRoutinesPanel();
+            return;
+        }
+
+        Metrics.getInstance().timer("ui.routinesPanel.update").time(() -> {
+            for (RoutineChange change : changes) {
+                Routine routine = change.routine;
+                JPanel oldCard = routineCards.remove(routine.getId());
+                int at = oldCard == null ? -1 : routinesPanel.getComponentZOrder(oldCard);
+                if (at >= 0) {
+                    routinesPanel.remove(at + 1); // the strut after it
+                    routinesPanel.remove(at);
+                }
+                // The repository is ahead of the events, so show what it holds now
+                if (change.change != RoutineRepository.Change.REMOVED && repository.contains(routine)) {
+                    JPanel card = createRoutineCard(routine);
+                    if (at < 0) {
+                        at = routinesPanel.getComponentCount();
+                    }
+                    routinesPanel.add(card, at);
+                    routinesPanel.add(Box.createVerticalStrut(10), at + 1);
+                    routineCards.put(routine.getId(), card);
+                }
+            }
+            routinesPanel.revalidate();
+            routinesPanel.repaint();
+        });
+    }
+
+    private static class RoutineChange {
+        final RoutineRepository.Change change;
+        final Routine routine;
 
-        routinesPanel.revalidate();
-        routinesPanel.repaint();
+        RoutineChange(RoutineRepository.Change change, Routine routine) {
+            this.change = change;
+            this.routine = routine;
+        }
     }
 
     public void updateHistoryPanel() {
-        historyPanel.removeAll();
-        historyPanel.add(Box.createVerticalStrut(10));
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(WORKOUT_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                JPanel historyEntry = createHistoryEntry(line);
-                historyPanel.add(historyEntry);
-                historyPanel.add(Box.createVerticalStrut(10));
+        if (historyModel != null) {
+            if (searchQuery().isEmpty()) {
+                historyModel.refresh();
+                updateHistorySummary();
+            } else {
+                searchHistory();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+    }
 
-        historyPanel.revalidate();
-        historyPanel.repaint();
-    }
-
-    private JPanel createHistoryEntry(String line) {
-        JPanel entry = new JPanel();
-        entry.setLayout(new BoxLayout(entry, BoxLayout.Y_AXIS));
-        entry.setBorder(BorderFactory.createCompoundBorder(
-                new RoundedBorder(8, new Color(220, 220, 220)),
-                BorderFactory.createEmptyBorder(10, 10, 10, 10)));
-        entry.setBackground(new Color(252, 252, 252));
-        entry.setMaximumSize(new Dimension(Integer.MAX_VALUE, 100));
-
-        // Parse and format the history line
-        String[] parts = line.split("\\|");
-        if (parts.length >= 4) {
-            // Date with special styling
-            JPanel datePanel = new JPanel();
-            datePanel.setBackground(new Color(70, 130, 180));
-            datePanel.setBorder(new RoundedBorder(4, new Color(70, 130, 180)));
-            JLabel dateLabel = new JLabel(parts[0].trim());
-            dateLabel.setForeground(Color.WHITE);
-            dateLabel.setFont(new Font("Arial", Font.BOLD, 12));
-            datePanel.add(dateLabel);
-
-            // Workout name
-            JLabel workoutLabel = new JLabel(parts[1].trim());
-            workoutLabel.setFont(new Font("Arial", Font.BOLD, 14));
-
-            // Duration
-            JLabel durationLabel = new JLabel(parts[2].trim());
-            durationLabel.setFont(new Font("Arial", Font.PLAIN, 12));
-            durationLabel.setForeground(new Color(100, 100, 100));
-
-            // Exercise count
-            JLabel exerciseLabel = new JLabel(parts[3].trim());
-            exerciseLabel.setFont(new Font("Arial", Font.PLAIN, 12));
-            exerciseLabel.setForeground(new Color(100, 100, 100));
-
-            // Add components
-            entry.add(datePanel);
-            entry.add(Box.createVerticalStrut(5));
-            entry.add(workoutLabel);
-            entry.add(Box.createVerticalStrut(3));
-            entry.add(durationLabel);
-            entry.add(exerciseLabel);
-        }
+    // The search text, or "" until the index is ready
+    private String searchQuery() {
+        return searchIndex == null ? "" : searchField.getText().trim();
+    }
 
-        return entry;
+    private void runSearch() {
+        if (searchIndex == null) {
+            return;
+        }
+        updateRoutinesPanel();
+        searchHistory();
     }
 
-    // Custom rounded border class
-    public static class RoundedBorder extends AbstractBorder {
-        private int radius;
-        private Color color;
+    // A search overrides the date range; clearing it brings the range back
+    private void searchHistory() {
+        String query = searchQuery();
+        historyModel.setMatches(query.isEmpty() ? null : searchIndex.searchHistory(query, MAX_HISTORY_RESULTS));
+        updateHistorySummary();
+    }
 
-        RoundedBorder(int radius, Color color) {
-            this.radius = radius;
-            this.color = color;
+    // Narrows the history list to the selected range; the store finds the
+    // range through its day index, so only the records inside it are read
+    private void applyHistoryRange() {
+        if (historyModel == null) {
+            return;
         }
-
-        @Override
-        public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
-            Graphics2D g2d = (Graphics2D) g.create();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setColor(color);
-            g2d.drawRoundRect(x, y, width - 1, height - 1, radius, radius);
-            g2d.dispose();
+        LocalDate today = LocalDate.now();
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        switch (historyRangeBox.getSelectedIndex()) {
+            case 1 -> from = startOf(today.minusDays(6));
+            case 2 -> from = startOf(today.minusDays(29));
+            case 3 -> from = startOf(today.withDayOfYear(1));
+            case 4 -> {
+                from = startOf(today.minusYears(1).withDayOfYear(1));
+                to = startOf(today.withDayOfYear(1));
+            }
+            default -> {
+            }
         }
+        historyModel.setRange(from, to);
+        updateHistorySummary();
+    }
 
-        @Override
-        public Insets getBorderInsets(Component c) {
-            return new Insets(radius / 2, radius / 2, radius / 2, radius / 2);
-        }
+    private static long startOf(LocalDate day) {
+        return HistoryRecord.toTimestamp(day.atStartOfDay());
+    }
+
+    private void updateHistorySummary() {
+        int count = historyModel.getSize();
+        historySummaryLabel.setText(count + (count == 1 ? " workout, " : " workouts, ")
+                + HistoryRecord.formatDuration((int) historyModel.getTotalDurationSeconds()));
     }
 }
\ No newline at end of file
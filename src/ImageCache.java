@@ -0,0 +1,185 @@
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import javax.swing.Icon;
+
+// Application-wide image cache. Each PNG is decoded once, and every size it
+// is shown at is scaled once per display scale factor, so a screen full of
+// routine cards shares a single icon and a single bitmap. Both levels are
+// bounded and evict the least recently used entry.
+public class ImageCache {
+    private static final int MAX_SOURCES = 32;
+    private static final int MAX_SCALED = 128;
+
+    // Decoded source images by path; missing files are cached as null too
+    private static final Map<String, BufferedImage> sources = lruMap(MAX_SOURCES);
+    // Scaled bitmaps by "path|width|height|scale"
+    private static final Map<String, BufferedImage> scaled = lruMap(MAX_SCALED);
+    // Icons handed to components by "path|width|height"
+    private static final Map<String, Icon> icons = lruMap(MAX_SCALED);
+
+    private ImageCache() {
+    }
+
+    private static <V> Map<String, V> lruMap(int maxEntries) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // Decodes the image and scales it for the default screen ahead of time
+    public static void preloadIcon(String path, int width, int height) {
+        if (getIcon(path, width, height) != null) {
+            getScaledImage(path, width, height, defaultScale());
+        }
+    }
+
+    // Shared icon that paints the image at width x height logical pixels,
+    // sharp at whatever scale the screen uses. Returns null when the image
+    // is missing or unreadable.
+    public static Icon getIcon(String path, int width, int height) {
+        if (getSource(path) == null) {
+            return null;
+        }
+        String key = path + '|' + width + '|' + height;
+        synchronized (icons) {
+            Icon icon = icons.get(key);
+            if (icon == null) {
+                icon = new ScaledIcon(path, width, height);
+                icons.put(key, icon);
+            }
+            return icon;
+        }
+    }
+
+    // The image scaled to width x height logical pixels at the given scale
+    // factor, or null when the image is missing
+    public static BufferedImage getScaledImage(String path, int width, int height, double scale) {
+        String key = path + '|' + width + '|' + height + '|' + scale;
+        synchronized (scaled) {
+            BufferedImage image = scaled.get(key);
+            if (image != null) {
+                return image;
+            }
+        }
+        BufferedImage source = getSource(path);
+        if (source == null) {
+            return null;
+        }
+        BufferedImage image = scale(source, (int) Math.ceil(width * scale), (int) Math.ceil(height * scale));
+        synchronized (scaled) {
+            scaled.put(key, image);
+        }
+        return image;
+    }
+
+    private static BufferedImage getSource(String path) {
+        synchronized (sources) {
+            if (sources.containsKey(path)) {
+                return sources.get(path);
+            }
+        }
+        BufferedImage image = readImage(path);
+        synchronized (sources) {
+            sources.put(path, image);
+        }
+        return image;
+    }
+
+    private static BufferedImage readImage(String path) {
+        try {
+            BufferedImage image = ImageIO.read(new File(path));
+            if (image == null) {
+                System.err.println("Warning: Could not load image " + path + ": unsupported format");
+            }
+            return image;
+        } catch (IOException e) {
+            System.err.println("Warning: Could not load image " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Halves the image with bilinear filtering until it is close to the
+    // target size; a single bilinear step from a large PNG looks jagged
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            if (currentWidth < width || currentHeight < height) {
+                currentWidth = width;
+                currentHeight = height;
+            }
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = next.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            g2.dispose();
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static double defaultScale() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return 1.0;
+        }
+        return roundScale(GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().getDefaultTransform().getScaleX());
+    }
+
+    // Keeps fractional scales like 1.25 and 1.5 apart without creating a new
+    // cache entry for every tiny rounding difference in the transform
+    static double roundScale(double scale) {
+        return Math.max(1.0, Math.round(scale * 4) / 4.0);
+    }
+
+    // Picks the bitmap for the scale of the Graphics it paints into, so the
+    // same icon stays sharp when a window moves to a HiDPI screen
+    private static class ScaledIcon implements Icon {
+        private final String path;
+        private final int width;
+        private final int height;
+
+        ScaledIcon(String path, int width, int height) {
+            this.path = path;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            Graphics2D g2 = (Graphics2D) g;
+            AffineTransform transform = g2.getTransform();
+            BufferedImage image = getScaledImage(path, width, height, roundScale(transform.getScaleX()));
+            if (image != null) {
+                g2.drawImage(image, x, y, width, height, null);
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            return width;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return height;
+        }
+    }
+}
@@ -2,10 +2,16 @@ import javax.swing.SwingUtilities;
 
 public class Main {
     public static void main(String[] args) {
+        StartupPipeline startup = new StartupPipeline();
 
-        // Create and display the home screen.
+        // Create and display the home screen. It shows up empty and fills in
+        // as the startup stages finish.
         SwingUtilities.invokeLater(() -> {
-            new HomeScreen().setVisible(true);
+            EdtWatchdog.getInstance().install();
+            DiagnosticsDialog.installShortcut();
+            HomeScreen homeScreen = new HomeScreen(startup);
+            homeScreen.setVisible(true);
+            startup.mark("visible");
         });
     }
 
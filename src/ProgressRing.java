@@ -0,0 +1,170 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import javax.swing.JPanel;
+
+// Circular progress indicator for the rest timer. The background and the
+// empty track are rendered once into a compatible image, and a progress
+// change only repaints the bounds of the arc that actually moved, so the ring
+// can animate at a high frame rate without redrawing the whole panel.
+public class ProgressRing extends JPanel {
+    private static final int MARGIN = 20;
+    private static final int START_ANGLE = 90;
+    // The arc is a polyline with a vertex every half degree. Unlike Arc2D,
+    // whose curve segments shift whenever the sweep changes, the part that
+    // was already drawn stays pixel-identical, so only the moving end needs
+    // repainting. At this step the facets are far below a pixel.
+    private static final double STEP_DEGREES = 0.5;
+
+    private final Color trackColor;
+    private final Color progressColor;
+    private final BasicStroke stroke;
+    private final Path2D.Double arc = new Path2D.Double();
+    private double progress;
+
+    // Cached track, rebuilt when the size, background or display scale changes
+    private BufferedImage track;
+    private int trackWidth;
+    private int trackHeight;
+    private double trackScale;
+    private Color trackBackground;
+
+    public ProgressRing(Color trackColor, Color progressColor, float strokeWidth) {
+        this.trackColor = trackColor;
+        this.progressColor = progressColor;
+        this.stroke = new BasicStroke(strokeWidth);
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    // Fraction of the ring to fill; values above 1 draw a full ring
+    public void setProgress(double progress) {
+        double old = this.progress;
+        this.progress = progress;
+        if (sweep(old) == sweep(progress)) {
+            return;
+        }
+        if (!isShowing()) {
+            repaint();
+            return;
+        }
+        repaint(changedBounds(sweep(old), sweep(progress)));
+    }
+
+    private static double sweep(double progress) {
+        return Math.max(0, Math.min(1, progress)) * 360;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2d = (Graphics2D) g;
+        double scale = ImageCache.roundScale(g2d.getTransform().getScaleX());
+        if (track == null || trackWidth != getWidth() || trackHeight != getHeight()
+                || trackScale != scale || !getBackground().equals(trackBackground)) {
+            track = renderTrack(g2d.getDeviceConfiguration(), scale);
+        }
+        g2d.drawImage(track, 0, 0, getWidth(), getHeight(), null);
+
+        double sweep = sweep(progress);
+        if (sweep > 0) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g2.setColor(progressColor);
+            g2.setStroke(stroke);
+            buildArc(sweep);
+            g2.draw(arc);
+            g2.dispose();
+        }
+    }
+
+    private BufferedImage renderTrack(GraphicsConfiguration config, double scale) {
+        trackWidth = getWidth();
+        trackHeight = getHeight();
+        trackScale = scale;
+        trackBackground = getBackground();
+
+        int pixelWidth = Math.max(1, (int) Math.ceil(trackWidth * scale));
+        int pixelHeight = Math.max(1, (int) Math.ceil(trackHeight * scale));
+        BufferedImage image = config != null
+                ? config.createCompatibleImage(pixelWidth, pixelHeight, Transparency.OPAQUE)
+                : new BufferedImage(pixelWidth, pixelHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(trackBackground);
+        g2.fillRect(0, 0, pixelWidth, pixelHeight);
+        g2.scale(scale, scale);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(trackColor);
+        g2.setStroke(stroke);
+        int size = ringSize();
+        g2.drawOval((trackWidth - size) / 2, (trackHeight - size) / 2, size, size);
+        g2.dispose();
+        return image;
+    }
+
+    private void buildArc(double sweep) {
+        double radius = ringSize() / 2.0;
+        double centerX = (getWidth() - ringSize()) / 2 + radius;
+        double centerY = (getHeight() - ringSize()) / 2 + radius;
+        arc.reset();
+        arc.moveTo(centerX, centerY - radius);
+        for (double angle = STEP_DEGREES; angle < sweep; angle += STEP_DEGREES) {
+            lineTo(centerX, centerY, radius, START_ANGLE + angle);
+        }
+        lineTo(centerX, centerY, radius, START_ANGLE + sweep);
+    }
+
+    private void lineTo(double centerX, double centerY, double radius, double angle) {
+        // Java2D angles run counterclockwise with y pointing down
+        double radians = Math.toRadians(angle);
+        arc.lineTo(centerX + radius * Math.cos(radians), centerY - radius * Math.sin(radians));
+    }
+
+    private int ringSize() {
+        return Math.max(0, Math.min(getWidth(), getHeight()) - 2 * MARGIN);
+    }
+
+    // Bounds of the part of the ring between two sweep angles, starting at the
+    // last vertex both arcs share: the end points plus any axis extremes in
+    // between, widened by the stroke so the joins and line caps are covered
+    private Rectangle changedBounds(double fromSweep, double toSweep) {
+        double sharedVertex = Math.floor(Math.min(fromSweep, toSweep) / STEP_DEGREES) * STEP_DEGREES;
+        double low = START_ANGLE + Math.max(0, sharedVertex - STEP_DEGREES);
+        double high = START_ANGLE + Math.max(fromSweep, toSweep);
+        double radius = ringSize() / 2.0;
+        double centerX = (getWidth() - ringSize()) / 2 + radius;
+        double centerY = (getHeight() - ringSize()) / 2 + radius;
+
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        double[] angles = { low, high, 180, 270, 360 };
+        for (int i = 0; i < angles.length; i++) {
+            double angle = angles[i];
+            if (i >= 2 && (angle < low || angle > high)) {
+                continue;
+            }
+            double x = centerX + radius * Math.cos(Math.toRadians(angle));
+            double y = centerY - radius * Math.sin(Math.toRadians(angle));
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+
+        int pad = (int) Math.ceil(stroke.getLineWidth()) + 2;
+        int x = (int) Math.floor(minX) - pad;
+        int y = (int) Math.floor(minY) - pad;
+        return new Rectangle(x, y, (int) Math.ceil(maxX) + pad - x, (int) Math.ceil(maxY) + pad - y);
+    }
+}
@@ -2,20 +2,24 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
 import javax.swing.*;
-import javax.sound.sampled.*;
 import java.io.*;
 import java.util.concurrent.*;
 
 class RestTimerDialog extends JDialog {
     private static final Color PRIMARY_COLOR = new Color(70, 130, 180);
     private static final Color SECONDARY_COLOR = new Color(240, 240, 240);
+    static final int ICON_SIZE = 24;
+    // Frame rate of the progress ring animation
+    static final int ANIMATION_FPS = 30;
     private int remainingSeconds;
-    private Timer timer;
-    private JPanel circularProgress;
+    private final Stopwatch stopwatch = new Stopwatch();
+    private long durationNanos;
+    private final TickService.Listener tickListener = this::onTick;
+    private ProgressRing circularProgress;
     private JLabel timeLabel;
     private JButton playPauseButton;
-    private ImageIcon playIcon;
-    private ImageIcon pauseIcon;
+    private Icon playIcon;
+    private Icon pauseIcon;
     private boolean isPaused = false;
     private boolean isTimerRunning = false;
     private final int DEFAULT_REST_TIME = 60; // 1 minute default
@@ -24,6 +28,7 @@ class RestTimerDialog extends JDialog {
         super(parent, "Rest Timer", true);
         loadIcons();
         this.remainingSeconds = DEFAULT_REST_TIME;
+        this.durationNanos = DEFAULT_REST_TIME * 1_000_000_000L;
         initializeComponents();
         isTimerRunning = true;
         startTimer();
@@ -40,31 +45,9 @@ class RestTimerDialog extends JDialog {
         mainPanel.setBackground(Color.WHITE);
         mainPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
-        // Create circular progress panel
-        circularProgress = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-                int size = Math.min(getWidth(), getHeight()) - 40;
-                int x = (getWidth() - size) / 2;
-                int y = (getHeight() - size) / 2;
-
-                // Draw background circle
-                g2d.setColor(SECONDARY_COLOR);
-                g2d.setStroke(new BasicStroke(10));
-                g2d.drawOval(x, y, size, size);
-
-                // Draw progress arc
-                g2d.setColor(PRIMARY_COLOR);
-                double percentage = (double) remainingSeconds / DEFAULT_REST_TIME;
-                int startAngle = 90;
-                int arcAngle = (int) (percentage * 360);
-                g2d.drawArc(x, y, size, size, startAngle, arcAngle);
-            }
-        };
+        // Create circular progress ring
+        circularProgress = new ProgressRing(SECONDARY_COLOR, PRIMARY_COLOR, 10);
+        circularProgress.setProgress(1.0);
         circularProgress.setPreferredSize(new Dimension(200, 200));
 
         // Time label
@@ -128,11 +111,11 @@ class RestTimerDialog extends JDialog {
         if (isTimerRunning) {
                 playPauseButton.setIcon(playIcon);
                 // playPauseButton.setText("Pause");
-            timer.stop();
+            stopwatch.stop();
         } else {
                 playPauseButton.setIcon(pauseIcon);
                 // playPauseButton.setText("Play");
-            timer.start();
+            stopwatch.start();
         }
         isTimerRunning = !isTimerRunning;
     }
@@ -143,7 +126,7 @@ class RestTimerDialog extends JDialog {
         button.setForeground(Color.WHITE);
         button.setBackground(PRIMARY_COLOR);
         button.setPreferredSize(new Dimension(80, 35));
-        button.setBorder(new WorkoutScreen.RoundedBorder(17, PRIMARY_COLOR));
+        button.setBorder(RoundedBorder.of(17, PRIMARY_COLOR));
         button.setFocusPainted(false);
 
         button.addMouseListener(new MouseAdapter() {
@@ -160,54 +143,55 @@ class RestTimerDialog extends JDialog {
     }
 
     private void loadIcons() {
-        try {
-            // Using absolute file paths
-            File playFile = new File(AppPaths.getInstance().getPlayImage());
-            File pauseFile = new File(AppPaths.getInstance().getPauseImage());
-            System.out.println(playFile);
-            System.out.println(pauseFile);
-
-            if (!playFile.exists() || !pauseFile.exists()) {
-                System.err.println("Could not find icon files. Using text fallback.");
-                return;
-            }
-
-            playIcon = new ImageIcon(playFile.getAbsolutePath());
-            pauseIcon = new ImageIcon(pauseFile.getAbsolutePath());
-
-            // Scale icons to a reasonable size
-            Image playImg = playIcon.getImage().getScaledInstance(24, 24, Image.SCALE_SMOOTH);
-            Image pauseImg = pauseIcon.getImage().getScaledInstance(24, 24, Image.SCALE_SMOOTH);
-
-            playIcon = new ImageIcon(playImg);
-            pauseIcon = new ImageIcon(pauseImg);
-        } catch (Exception e) {
-            System.err.println("Error loading icons: " + e.getMessage());
-            e.printStackTrace();
+        // Decoded and scaled once, shared by every rest timer
+        playIcon = ImageCache.getIcon(AppPaths.getInstance().getPlayImage(), ICON_SIZE, ICON_SIZE);
+        pauseIcon = ImageCache.getIcon(AppPaths.getInstance().getPauseImage(), ICON_SIZE, ICON_SIZE);
+
+        if (playIcon == null || pauseIcon == null) {
+            System.err.println("Warning: Could not find the play and pause icons, using text buttons");
+            playIcon = null;
+            pauseIcon = null;
         }
     }
 
     private void startTimer() {
-        timer = new Timer(1000, e -> {
-            if (!isPaused) {
-                remainingSeconds--;
-                timeLabel.setText(formatTime(remainingSeconds));
-                circularProgress.repaint();
-
-                if (remainingSeconds <= 0) {
-                    timer.stop();
-                    playCompletionSound();
-                    dispose();
-                }
-            }
-        });
-        timer.start();
+        stopwatch.start();
+        TickService.getInstance().addListener(tickListener, 1000 / ANIMATION_FPS);
+    }
+
+    private void onTick(long now) {
+        if (isPaused) {
+            return;
+        }
+        long remainingNanos = durationNanos - stopwatch.getElapsedNanos(now);
+        // Round up so the display reaches 00:00 exactly when time runs out
+        int seconds = (int) Math.max(0, (remainingNanos + 999_999_999L) / 1_000_000_000L);
+        if (seconds != remainingSeconds) {
+            remainingSeconds = seconds;
+            timeLabel.setText(formatTime(remainingSeconds));
+        }
+        circularProgress.setProgress(Math.max(0, remainingNanos) / (DEFAULT_REST_TIME * 1_000_000_000.0));
+
+        if (remainingNanos <= 0) {
+            TickService.getInstance().removeListener(tickListener);
+            playCompletionSound();
+            dispose();
+        }
     }
 
     private void adjustTime(int seconds) {
-        remainingSeconds = Math.max(0, remainingSeconds + seconds);
+        long elapsedNanos = stopwatch.getElapsedNanos();
+        durationNanos = Math.max(elapsedNanos, durationNanos + seconds * 1_000_000_000L);
+        long remainingNanos = durationNanos - elapsedNanos;
+        remainingSeconds = (int) ((remainingNanos + 999_999_999L) / 1_000_000_000L);
         timeLabel.setText(formatTime(remainingSeconds));
-        circularProgress.repaint();
+        circularProgress.setProgress(remainingNanos / (DEFAULT_REST_TIME * 1_000_000_000.0));
+    }
+
+    @Override
+    public void dispose() {
+        TickService.getInstance().removeListener(tickListener);
+        super.dispose();
     }
 
     private String formatTime(int seconds) {
@@ -215,14 +199,6 @@ class RestTimerDialog extends JDialog {
     }
 
     private void playCompletionSound() {
-        try {
-            AudioInputStream audioStream = AudioSystem.getAudioInputStream(
-                    new File(AppPaths.getInstance().getBellSound()));
-            Clip clip = AudioSystem.getClip();
-            clip.open(audioStream);
-            clip.start();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        AudioCues.getInstance().play(AppPaths.getInstance().getBellSound());
     }
 }
@@ -0,0 +1,133 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.border.AbstractBorder;
+
+// Rounded outline shared by every screen. Instances are flyweights, one per
+// radius, color and inset, and the outline itself is rendered once per
+// radius, color and display scale into a small nine-slice image. Painting a
+// border is then eight image blits: the four corners as they are and the
+// straight middle slices stretched along the edges.
+public class RoundedBorder extends AbstractBorder {
+    private static final int MAX_IMAGES = 64;
+
+    private static final Map<String, RoundedBorder> borders = new ConcurrentHashMap<>();
+    private static final Map<String, BufferedImage> images = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > MAX_IMAGES;
+        }
+    };
+
+    private final int radius;
+    private final Color color;
+    private final int inset;
+    // Logical size of a corner slice; past it the outline is a straight line
+    private final int corner;
+
+    private RoundedBorder(int radius, Color color, int inset) {
+        this.radius = radius;
+        this.color = color;
+        this.inset = inset;
+        this.corner = radius / 2 + 2;
+    }
+
+    // Border with insets of half the radius, the usual spacing for cards and buttons
+    public static RoundedBorder of(int radius, Color color) {
+        return of(radius, color, radius / 2);
+    }
+
+    public static RoundedBorder of(int radius, Color color, int inset) {
+        String key = radius + "|" + color.getRGB() + "|" + inset;
+        return borders.computeIfAbsent(key, k -> new RoundedBorder(radius, color, inset));
+    }
+
+    @Override
+    public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
+        Graphics2D g2d = (Graphics2D) g;
+        if (width < 2 * corner + 1 || height < 2 * corner + 1) {
+            // Too small to slice; stroke it directly
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setColor(color);
+            g2.drawRoundRect(x, y, width - 1, height - 1, radius, radius);
+            g2.dispose();
+            return;
+        }
+
+        double scale = ImageCache.roundScale(g2d.getTransform().getScaleX());
+        BufferedImage image = getImage(scale);
+        // Corner and middle slice sizes in image pixels
+        int cornerPixels = (int) Math.round(corner * scale);
+        int middlePixels = image.getWidth() - 2 * cornerPixels;
+        int size = image.getWidth();
+        int right = x + width - corner;
+        int bottom = y + height - corner;
+
+        // Corners
+        g2d.drawImage(image, x, y, x + corner, y + corner,
+                0, 0, cornerPixels, cornerPixels, null);
+        g2d.drawImage(image, right, y, x + width, y + corner,
+                size - cornerPixels, 0, size, cornerPixels, null);
+        g2d.drawImage(image, x, bottom, x + corner, y + height,
+                0, size - cornerPixels, cornerPixels, size, null);
+        g2d.drawImage(image, right, bottom, x + width, y + height,
+                size - cornerPixels, size - cornerPixels, size, size, null);
+
+        // Edges
+        g2d.drawImage(image, x + corner, y, right, y + corner,
+                cornerPixels, 0, cornerPixels + middlePixels, cornerPixels, null);
+        g2d.drawImage(image, x + corner, bottom, right, y + height,
+                cornerPixels, size - cornerPixels, cornerPixels + middlePixels, size, null);
+        g2d.drawImage(image, x, y + corner, x + corner, bottom,
+                0, cornerPixels, cornerPixels, cornerPixels + middlePixels, null);
+        g2d.drawImage(image, right, y + corner, x + width, bottom,
+                size - cornerPixels, cornerPixels, size, cornerPixels + middlePixels, null);
+    }
+
+    // The outline of a (2 * corner + 1) square box, rendered at the given scale
+    private BufferedImage getImage(double scale) {
+        String key = radius + "|" + color.getRGB() + "|" + scale;
+        synchronized (images) {
+            BufferedImage image = images.get(key);
+            if (image == null) {
+                image = render(scale);
+                images.put(key, image);
+            }
+            return image;
+        }
+    }
+
+    private BufferedImage render(double scale) {
+        int logicalSize = 2 * corner + 1;
+        int cornerPixels = (int) Math.round(corner * scale);
+        int middlePixels = Math.max(1, (int) Math.round(scale));
+        BufferedImage image = new BufferedImage(2 * cornerPixels + middlePixels, 2 * cornerPixels + middlePixels,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.scale(image.getWidth() / (double) logicalSize, image.getHeight() / (double) logicalSize);
+        g2.setColor(color);
+        g2.drawRoundRect(0, 0, logicalSize - 1, logicalSize - 1, radius, radius);
+        g2.dispose();
+        return image;
+    }
+
+    @Override
+    public Insets getBorderInsets(Component c) {
+        return new Insets(inset, inset, inset, inset);
+    }
+
+    @Override
+    public Insets getBorderInsets(Component c, Insets insets) {
+        insets.set(inset, inset, inset, inset);
+        return insets;
+    }
+}
@@ -3,11 +3,6 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.FlowLayout;
 import java.awt.Font;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.Insets;
-import java.awt.RenderingHints;
-import java.util.ArrayList;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -19,18 +14,23 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
-import javax.swing.border.AbstractBorder;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 
 public class RoutineScreen extends JFrame {
     private Routine routine;
-    private ArrayList<Routine> allRoutines;
+    private RoutineRepository repository;
+    private final Profile profile;
+    private boolean pinned = true;
     private JPanel mainPanel;
     private JPanel exerciseListPanel;
     private JTextField routineNameField;
+    private JButton saveButton;
 
-    public RoutineScreen(ArrayList<Routine> allRoutines) {
-        this.allRoutines = allRoutines;
+    public RoutineScreen(RoutineRepository repository, Profile profile) {
+        this.repository = repository;
+        this.profile = profile;
+        profile.pin();
         this.routine = new Routine("New Routine");
         initializeComponents();
     }
@@ -49,7 +49,7 @@ public class RoutineScreen extends JFrame {
         JPanel namePanel = new JPanel(new BorderLayout());
         namePanel.setBorder(new EmptyBorder(10, 10, 10, 10));
         namePanel.setBackground(Color.WHITE);
-        namePanel.setBorder(new RoundedBorder(10, new Color(200, 200, 200)));
+        namePanel.setBorder(RoundedBorder.of(10, new Color(200, 200, 200), 10));
 
         JLabel nameLabel = new JLabel("Routine Name:");
         nameLabel.setFont(new Font("Arial", Font.BOLD, 16));
@@ -79,7 +79,7 @@ public class RoutineScreen extends JFrame {
         addButtonPanel.add(addExerciseButton);
 
         // Save button
-        JButton saveButton = new JButton("Save Routine");
+        saveButton = new JButton("Save Routine");
         styleButton(saveButton);
         saveButton.addActionListener(e -> saveRoutine());
 
@@ -99,7 +99,7 @@ public class RoutineScreen extends JFrame {
     private void addNewExercisePanel() {
         JPanel exercisePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         exercisePanel.setBackground(Color.WHITE);
-        exercisePanel.setBorder(new RoundedBorder(10, new Color(200, 200, 200)));
+        exercisePanel.setBorder(RoundedBorder.of(10, new Color(200, 200, 200), 10));
 
         JTextField nameField = new JTextField(12);
         JTextField weightField = new JTextField(5);
@@ -139,6 +139,14 @@ public class RoutineScreen extends JFrame {
             return;
         }
 
+        if (repository.isNameTaken(routineNameField.getText().trim(), routine)) {
+            JOptionPane.showMessageDialog(this,
+                "A routine with this name already exists.",
+                "Input Error",
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
         routine.setName(routineNameField.getText().trim());
         routine.getExercises().clear();
 
@@ -167,12 +175,22 @@ public class RoutineScreen extends JFrame {
             }
         }
 
-        if (!allRoutines.contains(routine)) {
-            allRoutines.add(routine);
-        }
-        Routine.saveRoutines(allRoutines);
-        JOptionPane.showMessageDialog(this, "Routine saved successfully!", "Save Successful", JOptionPane.INFORMATION_MESSAGE);
-        dispose();
+        // The routine is updated in memory right away; the window closes once it is on disk
+        saveButton.setEnabled(false);
+        repository.save(routine).whenCompleteAsync((done, error) -> {
+            if (error != null) {
+                Metrics.getInstance().counter("errors").increment();
+                saveButton.setEnabled(true);
+                JOptionPane.showMessageDialog(this,
+                    "Error saving routine: " + error.getMessage(),
+                    "Save Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            JOptionPane.showMessageDialog(this, "Routine saved successfully!", "Save Successful",
+                    JOptionPane.INFORMATION_MESSAGE);
+            dispose();
+        }, SwingUtilities::invokeLater);
     }
 
     private void styleButton(JButton button) {
@@ -181,33 +199,18 @@ public class RoutineScreen extends JFrame {
         button.setForeground(Color.WHITE);
         button.setFocusPainted(false);
         button.setBorder(BorderFactory.createCompoundBorder(
-            new RoundedBorder(10, new Color(70, 130, 180)),
+            RoundedBorder.of(10, new Color(70, 130, 180), 10),
             BorderFactory.createEmptyBorder(5, 15, 5, 15)
         ));
     }
 
-    // Custom RoundedBorder class for reusable borders
-    private static class RoundedBorder extends AbstractBorder {
-        private int radius;
-        private Color color;
-
-        public RoundedBorder(int radius, Color color) {
-            this.radius = radius;
-            this.color = color;
-        }
-
-        @Override
-        public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
-            Graphics2D g2 = (Graphics2D) g.create();
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2.setColor(color);
-            g2.drawRoundRect(x, y, width - 1, height - 1, radius, radius);
-            g2.dispose();
-        }
-
-        @Override
-        public Insets getBorderInsets(Component c) {
-            return new Insets(radius, radius, radius, radius);
+    @Override
+    public void dispose() {
+        // The member can be unloaded again once their windows are closed
+        if (pinned) {
+            pinned = false;
+            profile.unpin();
         }
+        super.dispose();
     }
 }
@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Staged application startup. The home screen goes up as a skeleton right
+// away while data and assets load concurrently on background threads, and
+// every stage and milestone is timed from the moment the pipeline was created.
+// The timings go to Metrics as startup.* timers; development mode also prints
+// them to stderr when startup is done.
+public class StartupPipeline {
+    private final long startNanos = System.nanoTime();
+    private final List<String> timings = new ArrayList<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "startup-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public <T> CompletableFuture<T> stage(String name, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> timed(name, task), executor);
+    }
+
+    // Runs a stage once the stage it depends on has finished
+    public <T, R> CompletableFuture<R> stage(String name, CompletableFuture<T> after, Function<T, R> task) {
+        return after.thenApplyAsync(value -> timed(name, () -> task.apply(value)), executor);
+    }
+
+    private <T> T timed(String name, Supplier<T> task) {
+        long begin = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            long end = System.nanoTime();
+            Metrics.getInstance().timer("startup." + name).record(end - begin);
+            record(String.format("  %-12s %5d ms (done at %d ms)", name, toMillis(end - begin), toMillis(end - startNanos)));
+        }
+    }
+
+    // Records a point in time such as first paint or interactive
+    public void mark(String milestone) {
+        long elapsed = System.nanoTime() - startNanos;
+        Metrics.getInstance().timer("startup." + milestone.toLowerCase().replace(' ', '.')).record(elapsed);
+        record(String.format("  %-12s at %d ms", milestone, toMillis(elapsed)));
+    }
+
+    private synchronized void record(String line) {
+        timings.add(line);
+    }
+
+    // Releases the loader threads, printing the timings in development mode
+    public synchronized void finish() {
+        if (EdtWatchdog.isDevMode()) {
+            System.err.println("Startup timings:");
+            for (String line : timings) {
+                System.err.println(line);
+            }
+        }
+        executor.shutdown();
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+}
@@ -0,0 +1,49 @@
+// Elapsed time from System.nanoTime() timestamps, so it stays accurate when
+// the EDT stalls or the wall clock changes. Can be paused and resumed.
+public class Stopwatch {
+    private long accumulatedNanos;
+    private long startedAt;
+    private boolean running;
+
+    public void start() {
+        if (!running) {
+            startedAt = System.nanoTime();
+            running = true;
+        }
+    }
+
+    public void stop() {
+        if (running) {
+            accumulatedNanos += System.nanoTime() - startedAt;
+            running = false;
+        }
+    }
+
+    public void reset() {
+        accumulatedNanos = 0;
+        startedAt = System.nanoTime();
+    }
+
+    // Continues from an earlier elapsed time, e.g. a resumed session
+    public void setElapsedNanos(long elapsedNanos) {
+        accumulatedNanos = elapsedNanos;
+        startedAt = System.nanoTime();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getElapsedNanos() {
+        return getElapsedNanos(System.nanoTime());
+    }
+
+    // Elapsed time as of a nanoTime() timestamp, such as the one passed to a tick
+    public long getElapsedNanos(long now) {
+        return running ? accumulatedNanos + (now - startedAt) : accumulatedNanos;
+    }
+
+    public int getElapsedSeconds() {
+        return (int) (getElapsedNanos() / 1_000_000_000L);
+    }
+}
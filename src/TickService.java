@@ -0,0 +1,116 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.swing.Timer;
+
+// One Swing timer that drives every open stopwatch, countdown and animation.
+// Listeners read the time from their own Stopwatch, so a late or skipped tick
+// only delays a repaint and never changes a duration. Each listener asks for
+// its own interval; the timer runs at the shortest one, only while something
+// is listening, and there is one wakeup per tick however many windows are open.
+public class TickService {
+    // Short enough that a second boundary shows up at most 100 ms late
+    public static final int DEFAULT_INTERVAL_MILLIS = 100;
+    // A tick this close to a listener's due time counts as on time
+    private static final long TOLERANCE_NANOS = 2_000_000L;
+    // Time spent running the listeners, one sample per tick
+    private static final Metrics.Timer TICK_TIMER = Metrics.getInstance().timer("ui.tick");
+
+    private static TickService instance;
+
+    public interface Listener {
+        // Called on the EDT with the System.nanoTime() of the tick
+        void tick(long now);
+    }
+
+    private static class Registration {
+        final Listener listener;
+        final int intervalMillis;
+        long nextDue;
+
+        Registration(Listener listener, int intervalMillis) {
+            this.listener = listener;
+            this.intervalMillis = intervalMillis;
+            this.nextDue = System.nanoTime();
+        }
+    }
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Timer timer;
+
+    private TickService() {
+        timer = new Timer(DEFAULT_INTERVAL_MILLIS, e -> fireTick());
+        timer.setCoalesce(true);
+    }
+
+    public static synchronized TickService getInstance() {
+        if (instance == null) {
+            instance = new TickService();
+        }
+        return instance;
+    }
+
+    // Must be called on the EDT
+    public void addListener(Listener listener) {
+        addListener(listener, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    // Calls the listener about every intervalMillis, e.g. 1000 / fps for an
+    // animation. Re-adding a listener changes its interval. Must be called on the EDT.
+    public void addListener(Listener listener, int intervalMillis) {
+        removeRegistration(listener);
+        registrations.add(new Registration(listener, Math.max(1, intervalMillis)));
+        updateTimer();
+    }
+
+    // Must be called on the EDT
+    public void removeListener(Listener listener) {
+        removeRegistration(listener);
+        updateTimer();
+    }
+
+    public int getListenerCount() {
+        return registrations.size();
+    }
+
+    private void removeRegistration(Listener listener) {
+        for (Registration registration : registrations) {
+            if (registration.listener == listener) {
+                registrations.remove(registration);
+            }
+        }
+    }
+
+    private void updateTimer() {
+        if (registrations.isEmpty()) {
+            timer.stop();
+            return;
+        }
+        int delay = Integer.MAX_VALUE;
+        for (Registration registration : registrations) {
+            delay = Math.min(delay, registration.intervalMillis);
+        }
+        timer.setDelay(delay);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    private void fireTick() {
+        TICK_TIMER.time(() -> {
+            long now = System.nanoTime();
+            for (Registration registration : registrations) {
+                if (now + TOLERANCE_NANOS < registration.nextDue) {
+                    continue;
+                }
+                // Pace from the clock rather than from the tick count, and skip
+                // frames instead of bunching them up after a stall
+                long interval = registration.intervalMillis * 1_000_000L;
+                registration.nextDue += interval;
+                if (registration.nextDue < now) {
+                    registration.nextDue = now + interval;
+                }
+                registration.listener.tick(now);
+            }
+        });
+    }
+}
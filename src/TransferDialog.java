@@ -0,0 +1,83 @@
+import java.awt.*;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import javax.swing.*;
+
+// Progress window for an import or export running in the background. The
+// owner window stays usable; Cancel stops the transfer at its next chunk.
+class TransferDialog extends JDialog {
+    private static final int PROGRESS_STEPS = 1000;
+
+    private final JProgressBar progressBar = new JProgressBar(0, PROGRESS_STEPS);
+    private final JButton cancelButton = new JButton("Cancel");
+    private final AtomicBoolean cancelRequested = new AtomicBoolean();
+    private volatile boolean updatePending = false;
+    private volatile long done;
+    private volatile long total;
+
+    interface TransferTask {
+        DataTransfer.Result run(DataTransfer.Progress progress, BooleanSupplier cancelled) throws IOException;
+    }
+
+    private TransferDialog(JFrame owner, String title) {
+        super(owner, title, false);
+        JLabel label = new JLabel(title + "...");
+        label.setFont(new Font("Arial", Font.PLAIN, 14));
+        progressBar.setStringPainted(true);
+
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(15, 20, 15, 20));
+        panel.add(label, BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttonPanel.add(cancelButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        add(panel);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        setSize(360, 150);
+        setLocationRelativeTo(owner);
+    }
+
+    // Shows the dialog and runs the transfer; onDone gets the result on the
+    // EDT once the transfer has stopped, also when it was cancelled, so the
+    // caller can pick up what an import added before it was stopped
+    static void run(JFrame owner, String title, TransferTask task, Consumer<DataTransfer.Result> onDone) {
+        TransferDialog dialog = new TransferDialog(owner, title);
+        CompletableFuture<DataTransfer.Result> transfer = DataTransfer
+                .runAsync(cancelled -> task.run(dialog::progress, dialog.cancelRequested::get));
+        dialog.cancelButton.addActionListener(e -> {
+            dialog.cancelButton.setEnabled(false);
+            dialog.cancelRequested.set(true);
+        });
+        dialog.setVisible(true);
+
+        transfer.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            dialog.dispose();
+            if (error == null) {
+                onDone.accept(result);
+            } else {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                JOptionPane.showMessageDialog(owner, title + " failed: " + cause.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }));
+    }
+
+    // Called from the transfer thread; at most one update is queued at a time
+    private void progress(long done, long total) {
+        this.done = done;
+        this.total = total;
+        if (!updatePending) {
+            updatePending = true;
+            SwingUtilities.invokeLater(() -> {
+                updatePending = false;
+                long all = this.total;
+                progressBar.setValue(all <= 0 ? 0 : (int) (this.done * PROGRESS_STEPS / all));
+            });
+        }
+    }
+}
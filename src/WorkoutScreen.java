@@ -1,28 +1,18 @@
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GridLayout;
-import java.awt.Insets;
-import java.awt.RenderingHints;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -34,36 +24,40 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
-import javax.swing.Timer;
-import javax.swing.border.AbstractBorder;
 
 public class WorkoutScreen extends JFrame {
     private Routine routine;
-    private ArrayList<Routine> allRoutines;
+    private RoutineRepository repository;
+    private final Profile profile;
+    private boolean pinned = true;
     private JPanel mainPanel;
     private JPanel exercisesPanel;
-    private Timer stopwatch;
-    private int seconds = 0;
+    private final Stopwatch stopwatch = new Stopwatch();
+    private SessionLog sessionLog;
+    private final TickService.Listener tickListener = this::updateTimerLabel;
+    private int displayedSeconds = -1;
     private JButton startFinishButton;
     private JLabel timerLabel;
     private HomeScreen homeScreen;
     private boolean workoutStarted = false;
     private List<JButton> addSetButtons = new ArrayList<>();
     private List<JButton> minusSetButtons = new ArrayList<>();
+    // Completed sets of each exercise, in routine order
+    private List<SetCounter> setCounters = new ArrayList<>();
+    private SessionCheckpoint checkpoint;
+    private final TickService.Listener checkpointListener = now -> saveCheckpoint();
     private static final Color DISABLED_COLOR = new Color(200, 200, 200);
-    // private static final Path HISTORY_FILE_PATH =
-    // Paths.get(System.getProperty("user.dir"), "config",
-    // "workout_history.txt");
-    // private static final String HISTORY_FILE = HISTORY_FILE_PATH.toString();
-    private static final String HISTORY_FILE = AppPaths.getInstance().getWorkoutHistoryPath();
     private static final Color PRIMARY_COLOR = new Color(70, 130, 180);
+    private static final int CHECKPOINT_INTERVAL_MILLIS = 5000;
 
     private Color primaryColor = new Color(70, 130, 180);
     private Color accentColor = new Color(240, 240, 240);
 
-    public WorkoutScreen(Routine routine, ArrayList<Routine> allRoutines) {
+    public WorkoutScreen(Routine routine, RoutineRepository repository, Profile profile) {
         this.routine = routine;
-        this.allRoutines = allRoutines;
+        this.repository = repository;
+        this.profile = profile;
+        profile.pin();
         initializeComponents();
         setLocationRelativeTo(null);
     }
@@ -100,10 +94,10 @@ public class WorkoutScreen extends JFrame {
         editRoutineButton.setForeground(Color.WHITE);
         editRoutineButton.setBackground(primaryColor);
         editRoutineButton.setPreferredSize(new Dimension(120, 35));
-        editRoutineButton.setBorder(new RoundedBorder(20, primaryColor));
+        editRoutineButton.setBorder(RoundedBorder.of(20, primaryColor));
         editRoutineButton.setFocusPainted(false);
         editRoutineButton.addActionListener(e -> {
-            EditRoutineScreen editRoutineScreen = new EditRoutineScreen(routine, allRoutines);
+            EditRoutineScreen editRoutineScreen = new EditRoutineScreen(routine, repository, profile);
             editRoutineScreen.setVisible(true);
             editRoutineScreen.addWindowListener(new java.awt.event.WindowAdapter() {
                 @Override
@@ -132,13 +126,13 @@ public class WorkoutScreen extends JFrame {
 
         // Display exercises
         for (Exercise exercise : routine.getExercises()) {
-            JPanel exercisePanel = createExercisePanel(exercise);
+            JPanel exercisePanel = createExercisePanel(exercise, 0);
             exercisesPanel.add(exercisePanel);
             exercisesPanel.add(Box.createVerticalStrut(10));
         }
 
         JScrollPane scrollPane = new JScrollPane(exercisesPanel);
-        scrollPane.setBorder(new RoundedBorder(10, new Color(220, 220, 220)));
+        scrollPane.setBorder(RoundedBorder.of(10, new Color(220, 220, 220)));
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
 
         // Control panel
@@ -151,7 +145,7 @@ public class WorkoutScreen extends JFrame {
         startFinishButton.setForeground(Color.WHITE);
         startFinishButton.setBackground(primaryColor);
         startFinishButton.setPreferredSize(new Dimension(150, 40));
-        startFinishButton.setBorder(new RoundedBorder(20, primaryColor));
+        startFinishButton.setBorder(RoundedBorder.of(20, primaryColor));
         startFinishButton.setFocusPainted(false);
         startFinishButton.addActionListener(e -> handleStartFinish());
         startFinishButton.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -172,33 +166,42 @@ public class WorkoutScreen extends JFrame {
         mainPanel.add(controlPanel, BorderLayout.SOUTH);
 
         add(mainPanel);
-
-        // Initialize stopwatch
-        stopwatch = new Timer(1000, e -> {
-            seconds++;
-            updateTimerLabel();
-        });
     }
 
     private void updateRoutineDisplay() {
-        setTitle("Workout: " + routine.getName());
-        exercisesPanel.removeAll();
-
-        for (Exercise exercise : routine.getExercises()) {
-            JPanel exercisePanel = createExercisePanel(exercise);
-            exercisesPanel.add(exercisePanel);
-            exercisesPanel.add(Box.createVerticalStrut(10));
-        }
+        Metrics.getInstance().timer("ui.workoutPanel.rebuild").time(() -> {
+            setTitle("Workout: " + routine.getName());
+            exercisesPanel.removeAll();
+
+            // Keep the progress of exercises that are still in the routine
+            Map<String, Integer> carried = new HashMap<>();
+            for (SetCounter counter : setCounters) {
+                carried.putIfAbsent(counter.exercise.getName(), counter.completed);
+            }
+            setCounters.clear();
+            addSetButtons.clear();
+            minusSetButtons.clear();
+
+            for (Exercise exercise : routine.getExercises()) {
+                int completed = Math.min(exercise.getSets(), carried.getOrDefault(exercise.getName(), 0));
+                JPanel exercisePanel = createExercisePanel(exercise, completed);
+                exercisesPanel.add(exercisePanel);
+                exercisesPanel.add(Box.createVerticalStrut(10));
+            }
+            if (workoutStarted) {
+                enableSetButtons();
+            }
 
-        exercisesPanel.revalidate();
-        exercisesPanel.repaint();
+            exercisesPanel.revalidate();
+            exercisesPanel.repaint();
+        });
     }
 
-    private JPanel createExercisePanel(Exercise exercise) {
+    private JPanel createExercisePanel(Exercise exercise, int completed) {
         JPanel panel = new JPanel(new BorderLayout(10, 5));
         panel.setBackground(accentColor);
         panel.setBorder(BorderFactory.createCompoundBorder(
-                new RoundedBorder(10, new Color(220, 220, 220)),
+                RoundedBorder.of(10, new Color(220, 220, 220)),
                 BorderFactory.createEmptyBorder(15, 15, 15, 15)));
         panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 100));
 
@@ -225,10 +228,11 @@ public class WorkoutScreen extends JFrame {
         controlsPanel.setOpaque(false);
 
         // Counter variable to track completed sets
-        final int[] completedSets = { 0 };
+        SetCounter counter = new SetCounter(exercise, completed);
+        setCounters.add(counter);
 
         // Sets counter
-        JLabel setsLabel = new JLabel("0 / " + exercise.getSets());
+        JLabel setsLabel = new JLabel(counter.completed + " / " + exercise.getSets());
         setsLabel.setFont(new Font("Arial", Font.BOLD, 16));
 
         // + button for set completion
@@ -238,19 +242,19 @@ public class WorkoutScreen extends JFrame {
         addSetButton.setBackground(DISABLED_COLOR);
         addSetButton.setPreferredSize(new Dimension(40, 40));
         addSetButton.setFocusPainted(false);
-        addSetButton.setBorder(new RoundedBorder(20, DISABLED_COLOR));
+        addSetButton.setBorder(RoundedBorder.of(20, DISABLED_COLOR));
         addSetButton.setEnabled(false);
         addSetButtons.add(addSetButton);
     
         addSetButton.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseEntered(java.awt.event.MouseEvent evt) {
-                if (addSetButton.isEnabled() && completedSets[0] < exercise.getSets()) {
+                if (addSetButton.isEnabled() && counter.completed < exercise.getSets()) {
                     addSetButton.setBackground(primaryColor.darker());
                 }
             }
     
             public void mouseExited(java.awt.event.MouseEvent evt) {
-                if (addSetButton.isEnabled() && completedSets[0] < exercise.getSets()) {
+                if (addSetButton.isEnabled() && counter.completed < exercise.getSets()) {
                     addSetButton.setBackground(primaryColor);
                 }
             }
@@ -258,9 +262,11 @@ public class WorkoutScreen extends JFrame {
 
         // incrementing
         addSetButton.addActionListener(e -> {
-            if (completedSets[0] < exercise.getSets()) {
-                completedSets[0]++;
-                setsLabel.setText(completedSets[0] + " / " + exercise.getSets());
+            if (counter.completed < exercise.getSets()) {
+                counter.completed++;
+                setsLabel.setText(counter.completed + " / " + exercise.getSets());
+                sessionLog.setCompleted(exercise, counter.completed);
+                saveCheckpoint();
 
                 // Play sound and show rest timer
                 playSetCompletionSound();
@@ -269,7 +275,7 @@ public class WorkoutScreen extends JFrame {
                     restTimer.setVisible(true);
                 });
 
-                if (completedSets[0] == exercise.getSets()) {
+                if (counter.completed == exercise.getSets()) {
                     addSetButton.setEnabled(false);
                     addSetButton.setBackground(Color.GRAY);
                 }
@@ -283,19 +289,19 @@ public class WorkoutScreen extends JFrame {
         minusSetButton.setBackground(DISABLED_COLOR);
         minusSetButton.setPreferredSize(new Dimension(40, 40));
         minusSetButton.setFocusPainted(false);
-        minusSetButton.setBorder(new RoundedBorder(20, DISABLED_COLOR));
+        minusSetButton.setBorder(RoundedBorder.of(20, DISABLED_COLOR));
         minusSetButton.setEnabled(false);
         minusSetButtons.add(minusSetButton);
     
         minusSetButton.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseEntered(java.awt.event.MouseEvent evt) {
-                if (minusSetButton.isEnabled() && completedSets[0] > 0) {
+                if (minusSetButton.isEnabled() && counter.completed > 0) {
                     minusSetButton.setBackground(primaryColor.darker());
                 }
             }
     
             public void mouseExited(java.awt.event.MouseEvent evt) {
-                if (minusSetButton.isEnabled() && completedSets[0] > 0) {
+                if (minusSetButton.isEnabled() && counter.completed > 0) {
                     minusSetButton.setBackground(primaryColor);
                 }
             }
@@ -303,9 +309,11 @@ public class WorkoutScreen extends JFrame {
 
         // decrementing
         minusSetButton.addActionListener(e -> {
-            if (completedSets[0] > 0) {
-                completedSets[0]--;
-                setsLabel.setText(completedSets[0] + " / " + exercise.getSets());
+            if (counter.completed > 0) {
+                sessionLog.setUndone(exercise, counter.completed);
+                counter.completed--;
+                saveCheckpoint();
+                setsLabel.setText(counter.completed + " / " + exercise.getSets());
                 addSetButton.setEnabled(true);
                 addSetButton.setBackground(PRIMARY_COLOR);
             }
@@ -338,89 +346,152 @@ public class WorkoutScreen extends JFrame {
 
     private void handleStartFinish() {
         if (startFinishButton.getText().equals("Start Workout")) {
-            workoutStarted = true;
-            stopwatch.start();
-            startFinishButton.setText("Finish Workout");
-            // Enable all set buttons
-            for (JButton button : addSetButtons) {
-                button.setEnabled(true);
-                button.setBackground(PRIMARY_COLOR);
-            }
-            for (JButton button : minusSetButtons) {
-                button.setEnabled(true);
-                button.setBackground(PRIMARY_COLOR);
-            }
+            startWorkout(SessionLog.start(profile.getSessionsDir(), routine));
         } else {
             stopwatch.stop();
+            TickService.getInstance().removeListener(tickListener);
+            TickService.getInstance().removeListener(checkpointListener);
+            sessionLog.finish();
             logWorkout();
-            if (homeScreen != null) {
-                homeScreen.updateHistoryPanel();
-            }
+            clearCheckpoint();
             dispose();
         }
     }
 
-    private void updateTimerLabel() {
+    private void startWorkout(SessionLog log) {
+        workoutStarted = true;
+        sessionLog = log;
+        stopwatch.start();
+        TickService.getInstance().addListener(tickListener);
+        TickService.getInstance().addListener(checkpointListener, CHECKPOINT_INTERVAL_MILLIS);
+        startFinishButton.setText("Finish Workout");
+        enableSetButtons();
+        saveCheckpoint();
+    }
+
+    // Continues a session that was interrupted, from its last checkpoint
+    public void resume(SessionCheckpoint.State state) {
+        List<Exercise> exercises = routine.getExercises();
+        for (int i = 0; i < setCounters.size(); i++) {
+            setCounters.get(i).completed = state.getCompletedSets(i, exercises.get(i));
+        }
+        updateRoutineDisplay();
+        stopwatch.setElapsedNanos(state.getElapsedNanos());
+        updateTimerLabel(System.nanoTime());
+        startWorkout(SessionLog.resume(profile.getSessionsDir(), state.getSessionLogName(), routine,
+                state.getElapsedNanos()));
+    }
+
+    private void enableSetButtons() {
+        for (JButton button : addSetButtons) {
+            button.setEnabled(true);
+            button.setBackground(PRIMARY_COLOR);
+        }
+        for (JButton button : minusSetButtons) {
+            button.setEnabled(true);
+            button.setBackground(PRIMARY_COLOR);
+        }
+        for (int i = 0; i < setCounters.size(); i++) {
+            SetCounter counter = setCounters.get(i);
+            if (counter.completed == counter.exercise.getSets()) {
+                addSetButtons.get(i).setEnabled(false);
+                addSetButtons.get(i).setBackground(Color.GRAY);
+            }
+        }
+    }
+
+    // A handful of bytes copied into the mapped checkpoint file
+    private void saveCheckpoint() {
+        if (!workoutStarted) {
+            return;
+        }
+        if (checkpoint == null) {
+            try {
+                checkpoint = profile.getCheckpoint();
+            } catch (IOException e) {
+                System.err.println("Warning: Could not open session checkpoint: " + e.getMessage());
+                return;
+            }
+        }
+        List<Exercise> exercises = new ArrayList<>(setCounters.size());
+        int[] completed = new int[setCounters.size()];
+        for (int i = 0; i < completed.length; i++) {
+            exercises.add(setCounters.get(i).exercise);
+            completed[i] = setCounters.get(i).completed;
+        }
+        checkpoint.save(routine.getId(), sessionLog.getFile(), stopwatch.getElapsedNanos(), exercises, completed);
+    }
+
+    private void clearCheckpoint() {
+        if (checkpoint != null) {
+            checkpoint.clear();
+        }
+    }
+
+    private void updateTimerLabel(long now) {
+        int seconds = (int) (stopwatch.getElapsedNanos(now) / 1_000_000_000L);
+        if (seconds == displayedSeconds) {
+            return;
+        }
+        displayedSeconds = seconds;
         int hours = seconds / 3600;
         int minutes = (seconds % 3600) / 60;
         int secs = seconds % 60;
         timerLabel.setText(String.format("%02d:%02d:%02d", hours, minutes, secs));
     }
 
+    // Queued on the persistence writer; the home screen's history picks the
+    // workout up once it is stored
     private void logWorkout() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(HISTORY_FILE, true))) {
-            LocalDateTime now = LocalDateTime.now();
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-            writer.println(String.format(
-                    "Workout: %s |Date:  %s | Duration: %s | Exercises: %d",
-                    routine.getName(),
-                    now.format(formatter),
-                    timerLabel.getText(),
-                    routine.getExercises().size()));
-
-        } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this,
-                    "Error logging workout: " + e.getMessage(),
-                    "Log Error",
-                    JOptionPane.ERROR_MESSAGE);
-        }
+        Profile member = profile;
+        String routineName = routine.getName();
+        long timestamp = HistoryRecord.toTimestamp(LocalDateTime.now());
+        int seconds = stopwatch.getElapsedSeconds();
+        int exerciseCount = routine.getExercises().size();
+        HomeScreen home = homeScreen;
+        PersistenceService.getInstance()
+                .submit(null, () -> member.getHistory().append(routineName, timestamp, seconds, exerciseCount))
+                .whenCompleteAsync((done, error) -> {
+                    if (error != null) {
+                        Metrics.getInstance().counter("errors").increment();
+                        JOptionPane.showMessageDialog(home,
+                                "Error logging workout: " + error.getMessage(),
+                                "Log Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    } else if (home != null) {
+                        home.updateHistoryPanel();
+                    }
+                }, SwingUtilities::invokeLater);
     }
 
-    public static class RoundedBorder extends AbstractBorder {
-        private int radius;
-        private Color color;
 
-        RoundedBorder(int radius, Color color) {
-            this.radius = radius;
-            this.color = color;
-        }
+    private static class SetCounter {
+        final Exercise exercise;
+        int completed;
 
-        @Override
-        public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
-            Graphics2D g2d = (Graphics2D) g.create();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setColor(color);
-            g2d.drawRoundRect(x, y, width - 1, height - 1, radius, radius);
-            g2d.dispose();
+        SetCounter(Exercise exercise, int completed) {
+            this.exercise = exercise;
+            this.completed = completed;
         }
+    }
 
-        @Override
-        public Insets getBorderInsets(Component c) {
-            return new Insets(radius / 2, radius / 2, radius / 2, radius / 2);
+    @Override
+    public void dispose() {
+        TickService.getInstance().removeListener(tickListener);
+        TickService.getInstance().removeListener(checkpointListener);
+        if (sessionLog != null) {
+            sessionLog.close();
         }
+        // Closing the window abandons the workout; only a crash leaves a checkpoint behind
+        clearCheckpoint();
+        if (pinned) {
+            pinned = false;
+            profile.unpin();
+        }
+        super.dispose();
     }
 
     private void playSetCompletionSound() {
-        try {
-            AudioInputStream audioStream = AudioSystem.getAudioInputStream(
-                    new File(AppPaths.getInstance().getBellSound()));
-            Clip clip = AudioSystem.getClip();
-            clip.open(audioStream);
-            clip.start();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        AudioCues.getInstance().play(AppPaths.getInstance().getBellSound());
     }
 }